@@ -0,0 +1,43 @@
+package com.hivemq.tha.sar.qa.benchmark;
+
+import com.hivemq.tha.sar.qa.subscription.ServerInstrumentation;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionServerExtension;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+
+final class BenchmarkServers {
+
+    private static final @NotNull String SHELL_PATH = "/bin/bash";
+    private static final @NotNull String JAVA_PATH =
+            System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+    private BenchmarkServers() {
+    }
+
+    static @NotNull SubscriptionServerExtension start(final int threadCount, final @NotNull Duration requestTimeout)
+            throws IOException, InterruptedException {
+        return start(threadCount, requestTimeout, null);
+    }
+
+    static @NotNull SubscriptionServerExtension start(
+            final int threadCount,
+            final @NotNull Duration requestTimeout,
+            final @Nullable ServerInstrumentation instrumentation) throws IOException, InterruptedException {
+        final SubscriptionServerExtension.Builder builder = SubscriptionServerExtension.newBuilder()
+                .setShellPath(SHELL_PATH)
+                .setJavaPath(JAVA_PATH)
+                .setThreadCount(threadCount)
+                .setRequestTimeout(requestTimeout)
+                .setStartTimeout(Duration.ofSeconds(10));
+        if (instrumentation != null) {
+            builder.setInstrumentation(instrumentation);
+        }
+        final SubscriptionServerExtension server = builder.build();
+        server.start();
+        return server;
+    }
+}
@@ -0,0 +1,133 @@
+package com.hivemq.tha.sar.qa.benchmark;
+
+import com.google.common.collect.ImmutableList;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionClient;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionServerExtension;
+import com.hivemq.tha.sar.qa.subscription.TopicTreeGenerator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the throughput of the {@link HttpClient} defaults with explicit HTTP versions and executors, for
+ * blocking calls from several threads and for pipelined async calls.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class HttpClientConfigurationBenchmark {
+
+    private static final int TOPIC_COUNT = 1024;
+    private static final int PIPELINE_DEPTH = 32;
+
+    public enum Configuration {
+        DEFAULT,
+        HTTP_1_1,
+        HTTP_2,
+        HTTP_1_1_FIXED_EXECUTOR,
+        HTTP_1_1_VIRTUAL_THREADS
+    }
+
+    @Param
+    public @NotNull Configuration configuration;
+
+    @Param({"4"})
+    public int serverThreadCount;
+
+    private @NotNull SubscriptionServerExtension server;
+    private @NotNull SubscriptionClient client;
+    private @Nullable ExecutorService executor;
+    private @NotNull String @NotNull [] topics;
+    private final @NotNull AtomicInteger nextTopic = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = BenchmarkServers.start(serverThreadCount, Duration.ofSeconds(10));
+        final SubscriptionClient.Builder builder = SubscriptionClient.newBuilder()
+                .setPort(server.getPort())
+                .setRequestTimeout(server.getRequestTimeout())
+                .setMaxInFlightRequests(PIPELINE_DEPTH);
+        switch (configuration) {
+            case DEFAULT:
+                break;
+            case HTTP_1_1:
+                builder.setHttpVersion(HttpClient.Version.HTTP_1_1);
+                break;
+            case HTTP_2:
+                builder.setHttpVersion(HttpClient.Version.HTTP_2);
+                break;
+            case HTTP_1_1_FIXED_EXECUTOR:
+                executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+                builder.setHttpVersion(HttpClient.Version.HTTP_1_1).setExecutor(executor);
+                break;
+            case HTTP_1_1_VIRTUAL_THREADS:
+                executor = SubscriptionClient.newVirtualThreadExecutor();
+                if (executor == null) {
+                    throw new IllegalStateException("Virtual threads require Java 21 or later");
+                }
+                builder.setHttpVersion(HttpClient.Version.HTTP_1_1).setExecutor(executor);
+                break;
+        }
+        client = builder.build();
+        final TopicTreeGenerator generator = new TopicTreeGenerator(42, 4, 10, 0.1);
+        client.addSubscriptions(generator.nextSubscriptions(10_000, 100), 1000);
+        topics = new String[TOPIC_COUNT];
+        for (int i = 0; i < TOPIC_COUNT; i++) {
+            topics[i] = generator.nextTopic();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        server.stop();
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public @NotNull ImmutableList<String> getMatchingSubscribers() throws IOException, InterruptedException {
+        return client.getMatchingSubscribers(nextTopic());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIPELINE_DEPTH)
+    public void getMatchingSubscribersPipelined() throws InterruptedException {
+        final CompletableFuture<?>[] futures = new CompletableFuture[PIPELINE_DEPTH];
+        for (int i = 0; i < PIPELINE_DEPTH; i++) {
+            futures[i] = client.getMatchingSubscribersAsync(nextTopic());
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+    private @NotNull String nextTopic() {
+        return topics[nextTopic.getAndIncrement() & (TOPIC_COUNT - 1)];
+    }
+}
@@ -0,0 +1,98 @@
+package com.hivemq.tha.sar.qa.benchmark;
+
+import com.hivemq.tha.sar.qa.subscription.LoadGenerator;
+import com.hivemq.tha.sar.qa.subscription.LoadResult;
+import com.hivemq.tha.sar.qa.subscription.ResourceReport;
+import com.hivemq.tha.sar.qa.subscription.ServerInstrumentation;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionClient;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionServerExtension;
+import com.hivemq.tha.sar.qa.subscription.TopicTreeGenerator;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Ramps the target rate against a fresh server until it saturates and writes one JSON summary per step.
+ * <p>
+ * Configured through system properties: {@code load.threadCount}, {@code load.requestTimeout} (ISO-8601),
+ * {@code load.stepDuration} (ISO-8601), {@code load.startRate}, {@code load.rateFactor}, {@code load.maxRate},
+ * {@code load.subscriptions} and {@code load.output}. With {@code load.instrumentation=true} the server runs with a JFR
+ * recording and GC logging, and every step reports the server's RSS and CPU usage.
+ */
+public class LoadTestRunner {
+
+    private static final double THROUGHPUT_TOLERANCE = 0.05;
+
+    public static void main(final @NotNull String @NotNull [] args) throws Exception {
+        final int threadCount = Integer.getInteger("load.threadCount", 2);
+        final Duration requestTimeout = Duration.parse(System.getProperty("load.requestTimeout", "PT10S"));
+        final Duration stepDuration = Duration.parse(System.getProperty("load.stepDuration", "PT30S"));
+        final double startRate = Double.parseDouble(System.getProperty("load.startRate", "50"));
+        final double rateFactor = Double.parseDouble(System.getProperty("load.rateFactor", "1.5"));
+        final double maxRate = Double.parseDouble(System.getProperty("load.maxRate", "5000"));
+        final int subscriptions = Integer.getInteger("load.subscriptions", 1000);
+        final Path output = Paths.get(System.getProperty("load.output", "target/load-result.json"));
+        final ServerInstrumentation instrumentation =
+                Boolean.getBoolean("load.instrumentation") ? ServerInstrumentation.newBuilder().build() : null;
+
+        final SubscriptionServerExtension server =
+                BenchmarkServers.start(threadCount, requestTimeout, instrumentation);
+        try {
+            final SubscriptionClient client = SubscriptionClient.newBuilder()
+                    .setPort(server.getPort())
+                    .setRequestTimeout(requestTimeout)
+                    .build();
+            final TopicTreeGenerator topicTreeGenerator = new TopicTreeGenerator(42, 4, 10, 0.1);
+            client.addSubscriptions(topicTreeGenerator.nextSubscriptions(subscriptions, 100), 1000);
+
+            final JSONArray steps = new JSONArray();
+            Double saturationRate = null;
+            for (double rate = startRate; rate <= maxRate && saturationRate == null; rate *= rateFactor) {
+                final long stepStart = System.nanoTime();
+                final LoadResult result = LoadGenerator.newBuilder()
+                        .setClient(client)
+                        .setTargetRate(rate)
+                        .setDuration(stepDuration)
+                        .setTopicTreeGenerator(topicTreeGenerator)
+                        .setWeight(LoadGenerator.Operation.ADD_SUBSCRIPTION, 1)
+                        .setWeight(LoadGenerator.Operation.GET_MATCHING_SUBSCRIBERS, 8)
+                        .setWeight(LoadGenerator.Operation.GET_SUBSCRIPTION_COUNT, 1)
+                        .build()
+                        .run();
+                System.out.println(result);
+                final JSONObject step = result.toJson();
+                final ResourceReport resources = server.getResourceReport();
+                if (resources != null) {
+                    System.out.println(resources.since(stepStart));
+                    step.put("serverResources", resources.since(stepStart).toJson());
+                }
+                steps.put(step);
+                if (result.isSaturated(THROUGHPUT_TOLERANCE)) {
+                    saturationRate = rate;
+                }
+            }
+
+            final JSONObject summary = new JSONObject();
+            summary.put("threadCount", threadCount);
+            summary.put("requestTimeoutMillis", requestTimeout.toMillis());
+            summary.put("saturationRate", saturationRate == null ? JSONObject.NULL : saturationRate);
+            summary.put("steps", steps);
+            final ResourceReport resources = server.getResourceReport();
+            if (resources != null) {
+                summary.put("serverResources", resources.toJson());
+                summary.put("flightRecording", String.valueOf(server.getFlightRecordingFile()));
+                summary.put("gcLog", String.valueOf(server.getGcLogFile()));
+            }
+            Files.createDirectories(output.toAbsolutePath().getParent());
+            Files.write(output, summary.toString(2).getBytes(StandardCharsets.UTF_8));
+        } finally {
+            server.stop();
+        }
+    }
+}
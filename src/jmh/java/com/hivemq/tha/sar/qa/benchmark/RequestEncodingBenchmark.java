@@ -0,0 +1,65 @@
+package com.hivemq.tha.sar.qa.benchmark;
+
+import com.hivemq.tha.sar.qa.subscription.JsonBodyEncoder;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.http.HttpRequest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding request bodies with {@link JSONObject} to {@link JsonBodyEncoder}. Run with {@code -prof gc} to
+ * see the allocated bytes per request in {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestEncodingBenchmark {
+
+    private final @NotNull String topicFilter = "building/floor7/room3/device/sensor12/+";
+    private final @NotNull String clientId = "client-4711";
+    private final @NotNull String topic = "building/floor7/room3/device/sensor12/temperature";
+
+    @Benchmark
+    public @NotNull HttpRequest.BodyPublisher addSubscriptionJsonObject() {
+        final JSONObject body = new JSONObject();
+        body.put("topicFilter", topicFilter);
+        body.put("clientId", clientId);
+        return HttpRequest.BodyPublishers.ofString(body.toString());
+    }
+
+    @Benchmark
+    public @NotNull HttpRequest.BodyPublisher addSubscriptionEncoder() {
+        return HttpRequest.BodyPublishers.ofByteArray(JsonBodyEncoder.get()
+                .beginObject()
+                .field("topicFilter", topicFilter)
+                .field("clientId", clientId)
+                .endObject()
+                .toByteArray());
+    }
+
+    @Benchmark
+    public @NotNull HttpRequest.BodyPublisher getMatchingSubscribersJsonObject() {
+        final JSONObject body = new JSONObject();
+        body.put("topic", topic);
+        return HttpRequest.BodyPublishers.ofString(body.toString());
+    }
+
+    @Benchmark
+    public @NotNull HttpRequest.BodyPublisher getMatchingSubscribersEncoder() {
+        return HttpRequest.BodyPublishers.ofByteArray(
+                JsonBodyEncoder.get().beginObject().field("topic", topic).endObject().toByteArray());
+    }
+}
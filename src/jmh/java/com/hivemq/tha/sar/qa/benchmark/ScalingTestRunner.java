@@ -0,0 +1,328 @@
+package com.hivemq.tha.sar.qa.benchmark;
+
+import com.google.common.collect.ImmutableList;
+import com.hivemq.tha.sar.qa.subscription.LatencyHistogram;
+import com.hivemq.tha.sar.qa.subscription.ResourceReport;
+import com.hivemq.tha.sar.qa.subscription.ServerInstrumentation;
+import com.hivemq.tha.sar.qa.subscription.Subscription;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionClient;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionServerExtension;
+import com.hivemq.tha.sar.qa.subscription.TopicTreeGenerator;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Measures how match and count latency scale with the number of subscriptions. Every combination of distribution,
+ * topic depth and wildcard ratio gets a fresh server, which is grown through the cardinalities in ascending order
+ * with concurrent {@code addSubscription} calls. At each cardinality the server is warmed up and then measured with
+ * sequential requests, so each point shows steady-state latency at that size.
+ * <p>
+ * Each series reports log-log slopes: latency growing with slope 1 grows linearly with the subscription count. A
+ * match latency slope above both 1 and the slope of the match result size, or a count latency slope above 1, both
+ * fitted over all points, is flagged as super-linear. The steepest segment shows where the growth starts.
+ * <p>
+ * Configured through system properties: {@code scaling.cardinalities}, {@code scaling.depths},
+ * {@code scaling.wildcardRatios} and {@code scaling.distributions} (comma separated, distributions are
+ * {@code UNIFORM} and {@code SKEWED}), {@code scaling.fanOut}, {@code scaling.subscriptionsPerClient},
+ * {@code scaling.loadConcurrency}, {@code scaling.threadCount}, {@code scaling.requestTimeout} (ISO-8601),
+ * {@code scaling.warmupRequests}, {@code scaling.requests} and {@code scaling.output}.
+ */
+public class ScalingTestRunner {
+
+    private static final long LOAD_SEED = 42;
+    private static final long QUERY_SEED = 43;
+    private static final int LOAD_CHUNK_SIZE = 10_000;
+    private static final int QUERY_TOPIC_COUNT = 1024;
+    private static final int COUNT_REQUEST_RATIO = 10;
+    private static final double SUPER_LINEAR_TOLERANCE = 0.1;
+
+    private enum Distribution {
+        UNIFORM(0),
+        /**
+         * Zipf distributed level values, so a few subtrees hold most subscriptions and receive most matches.
+         */
+        SKEWED(1.1);
+
+        private final double skew;
+
+        Distribution(final double skew) {
+            this.skew = skew;
+        }
+    }
+
+    private static class Point {
+
+        private final long cardinality;
+        private final double matchP50Nanos;
+        private final double matchP99Nanos;
+        private final double countP50Nanos;
+        private final double meanSubscribers;
+
+        private Point(
+                final long cardinality,
+                final double matchP50Nanos,
+                final double matchP99Nanos,
+                final double countP50Nanos,
+                final double meanSubscribers) {
+            this.cardinality = cardinality;
+            this.matchP50Nanos = matchP50Nanos;
+            this.matchP99Nanos = matchP99Nanos;
+            this.countP50Nanos = countP50Nanos;
+            this.meanSubscribers = meanSubscribers;
+        }
+    }
+
+    private final @NotNull ImmutableList<Long> cardinalities =
+            parseList("scaling.cardinalities", "1000,10000,100000,1000000,10000000", Long::parseLong);
+    private final @NotNull ImmutableList<Integer> depths = parseList("scaling.depths", "3,6", Integer::parseInt);
+    private final @NotNull ImmutableList<Double> wildcardRatios =
+            parseList("scaling.wildcardRatios", "0.0,0.2", Double::parseDouble);
+    private final @NotNull ImmutableList<Distribution> distributions =
+            parseList("scaling.distributions", "UNIFORM,SKEWED", Distribution::valueOf);
+    private final int fanOut = Integer.getInteger("scaling.fanOut", 10);
+    private final int subscriptionsPerClient = Integer.getInteger("scaling.subscriptionsPerClient", 10);
+    private final int loadConcurrency = Integer.getInteger("scaling.loadConcurrency", 64);
+    private final int threadCount = Integer.getInteger("scaling.threadCount", 4);
+    private final @NotNull Duration requestTimeout =
+            Duration.parse(System.getProperty("scaling.requestTimeout", "PT30S"));
+    private final int warmupRequests = Integer.getInteger("scaling.warmupRequests", 200);
+    private final int requests = Integer.getInteger("scaling.requests", 2000);
+    private final @NotNull Path output = Paths.get(System.getProperty("scaling.output", "target/scaling-result.json"));
+
+    public static void main(final @NotNull String @NotNull [] args) throws Exception {
+        new ScalingTestRunner().run();
+    }
+
+    private void run() throws Exception {
+        final JSONArray series = new JSONArray();
+        for (final Distribution distribution : distributions) {
+            for (final int depth : depths) {
+                for (final double wildcardRatio : wildcardRatios) {
+                    series.put(runSeries(distribution, depth, wildcardRatio));
+                }
+            }
+        }
+        final JSONObject summary = new JSONObject();
+        summary.put("threadCount", threadCount);
+        summary.put("fanOut", fanOut);
+        summary.put("subscriptionsPerClient", subscriptionsPerClient);
+        summary.put("series", series);
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        Files.write(output, summary.toString(2).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private @NotNull JSONObject runSeries(
+            final @NotNull Distribution distribution, final int depth, final double wildcardRatio)
+            throws Exception {
+        System.out.printf("%s distribution, depth %d, wildcard ratio %.2f%n", distribution, depth, wildcardRatio);
+        final JSONObject series = new JSONObject();
+        series.put("distribution", distribution.name());
+        series.put("depth", depth);
+        series.put("wildcardRatio", wildcardRatio);
+        final JSONArray jsonPoints = new JSONArray();
+        final List<Point> points = new ArrayList<>();
+        final ServerInstrumentation instrumentation =
+                ServerInstrumentation.newBuilder().setFlightRecording(false).setGcLogging(false).build();
+        final SubscriptionServerExtension server = BenchmarkServers.start(threadCount, requestTimeout, instrumentation);
+        try {
+            final SubscriptionClient client = SubscriptionClient.newBuilder()
+                    .setPort(server.getPort())
+                    .setRequestTimeout(requestTimeout)
+                    .setMaxInFlightRequests(loadConcurrency)
+                    .build();
+            final TopicTreeGenerator loadGenerator =
+                    new TopicTreeGenerator(LOAD_SEED, depth, fanOut, wildcardRatio, distribution.skew);
+            final TopicTreeGenerator queryGenerator =
+                    new TopicTreeGenerator(QUERY_SEED, depth, fanOut, 0, distribution.skew);
+            final String[] topics = new String[QUERY_TOPIC_COUNT];
+            Arrays.setAll(topics, i -> queryGenerator.nextTopic());
+            long loaded = 0;
+            for (final long cardinality : cardinalities) {
+                assert cardinality >= loaded : "Cardinalities must be ascending: " + cardinalities;
+                final long pointStart = System.nanoTime();
+                final JSONObject jsonPoint = new JSONObject();
+                jsonPoint.put("subscriptions", cardinality);
+                jsonPoints.put(jsonPoint);
+                try {
+                    final long added = cardinality - loaded;
+                    final long loadFailures = load(
+                            client, loadGenerator, added, (int) Math.max(1, cardinality / subscriptionsPerClient));
+                    final double loadSeconds = (System.nanoTime() - pointStart) / 1e9;
+                    loaded = cardinality;
+                    jsonPoint.put("loadFailures", loadFailures);
+                    jsonPoint.put("loadSeconds", loadSeconds);
+                    jsonPoint.put("loadRate", added / loadSeconds);
+                    final Point point = measure(client, topics, cardinality, jsonPoint);
+                    points.add(point);
+                    final ResourceReport resources = server.getResourceReport();
+                    if (resources != null) {
+                        jsonPoint.put("serverPeakRssBytes", resources.since(pointStart).getPeakRssBytes());
+                    }
+                    System.out.printf(
+                            "%,12d subscriptions: match p50 %,10.1f us, p99 %,10.1f us, %,10.1f subscribers, " +
+                                    "count p50 %,10.1f us, %,d load failures%n",
+                            cardinality,
+                            point.matchP50Nanos / 1e3,
+                            point.matchP99Nanos / 1e3,
+                            point.meanSubscribers,
+                            point.countP50Nanos / 1e3,
+                            loadFailures);
+                } catch (final IOException e) {
+                    // Usually the server ran out of memory; the smaller cardinalities still form a curve.
+                    jsonPoint.put("error", String.valueOf(e));
+                    System.out.printf("%,12d subscriptions: %s%n", cardinality, e);
+                    break;
+                }
+            }
+        } finally {
+            server.stop();
+        }
+        series.put("points", jsonPoints);
+        series.put("slopes", slopes(points));
+        return series;
+    }
+
+    /**
+     * Returns the number of failed requests.
+     */
+    private static long load(
+            final @NotNull SubscriptionClient client,
+            final @NotNull TopicTreeGenerator generator,
+            final long count,
+            final int clientCount) throws InterruptedException {
+        final LongAdder failures = new LongAdder();
+        for (long remaining = count; remaining > 0; remaining -= LOAD_CHUNK_SIZE) {
+            final List<CompletableFuture<Void>> chunk = new ArrayList<>(LOAD_CHUNK_SIZE);
+            for (final Subscription subscription :
+                    generator.nextSubscriptions((int) Math.min(LOAD_CHUNK_SIZE, remaining), clientCount)) {
+                chunk.add(client.addSubscriptionAsync(subscription.getTopicFilter(), subscription.getClientId())
+                        .exceptionally(throwable -> {
+                            failures.increment();
+                            return null;
+                        }));
+            }
+            CompletableFuture.allOf(chunk.toArray(new CompletableFuture[0])).join();
+        }
+        return failures.sum();
+    }
+
+    private @NotNull Point measure(
+            final @NotNull SubscriptionClient client,
+            final @NotNull String @NotNull [] topics,
+            final long cardinality,
+            final @NotNull JSONObject jsonPoint) throws IOException, InterruptedException {
+        for (int i = 0; i < warmupRequests; i++) {
+            client.getMatchingSubscribers(topics[i % topics.length]);
+        }
+        final LatencyHistogram matchLatency = new LatencyHistogram();
+        long subscribers = 0;
+        for (int i = 0; i < requests; i++) {
+            final long start = System.nanoTime();
+            subscribers += client.getMatchingSubscribers(topics[i % topics.length]).size();
+            matchLatency.recordNanos(System.nanoTime() - start);
+        }
+        final LatencyHistogram countLatency = new LatencyHistogram();
+        // The server counts distinct clients, not subscriptions, see "subscriptions" for the loaded count.
+        long clientCount = 0;
+        for (int i = 0; i < Math.max(1, requests / COUNT_REQUEST_RATIO); i++) {
+            final long start = System.nanoTime();
+            clientCount = client.getSubscriptionCount();
+            countLatency.recordNanos(System.nanoTime() - start);
+        }
+        final double meanSubscribers = (double) subscribers / Math.max(1, requests);
+        jsonPoint.put("clientCount", clientCount);
+        jsonPoint.put("meanSubscribers", meanSubscribers);
+        jsonPoint.put("match", matchLatency.toJson(TimeUnit.MICROSECONDS));
+        jsonPoint.put("count", countLatency.toJson(TimeUnit.MICROSECONDS));
+        return new Point(
+                cardinality,
+                matchLatency.getValueAtPercentileNanos(50),
+                matchLatency.getValueAtPercentileNanos(99),
+                countLatency.getValueAtPercentileNanos(50),
+                meanSubscribers);
+    }
+
+    private static @NotNull JSONObject slopes(final @NotNull List<@NotNull Point> points) {
+        final JSONObject slopes = new JSONObject();
+        final JSONObject matchP50 = slope(points, point -> point.matchP50Nanos);
+        final JSONObject matchP99 = slope(points, point -> point.matchP99Nanos);
+        final JSONObject countP50 = slope(points, point -> point.countP50Nanos);
+        final JSONObject meanSubscribers = slope(points, point -> point.meanSubscribers);
+        slopes.put("matchP50", matchP50);
+        slopes.put("matchP99", matchP99);
+        slopes.put("countP50", countP50);
+        slopes.put("meanSubscribers", meanSubscribers);
+        final double matchLimit = Math.max(1, meanSubscribers.optDouble("overall", 0)) + SUPER_LINEAR_TOLERANCE;
+        slopes.put("superLinearMatch", matchP50.optDouble("overall", 0) > matchLimit);
+        slopes.put("superLinearCount", countP50.optDouble("overall", 0) > 1 + SUPER_LINEAR_TOLERANCE);
+        System.out.println("Log-log slopes: " + slopes);
+        return slopes;
+    }
+
+    /**
+     * The least squares slope over all points and the steepest slope between neighbouring points, both of
+     * log(value) over log(cardinality). Points without a positive value are skipped.
+     */
+    private static @NotNull JSONObject slope(
+            final @NotNull List<@NotNull Point> points, final @NotNull ToDoubleFunction<@NotNull Point> value) {
+        final List<double[]> logPoints = new ArrayList<>();
+        for (final Point point : points) {
+            final double y = value.applyAsDouble(point);
+            if (y > 0) {
+                logPoints.add(new double[]{Math.log(point.cardinality), Math.log(y)});
+            }
+        }
+        final JSONObject slope = new JSONObject();
+        if (logPoints.size() < 2) {
+            return slope;
+        }
+        double meanX = 0;
+        double meanY = 0;
+        for (final double[] logPoint : logPoints) {
+            meanX += logPoint[0] / logPoints.size();
+            meanY += logPoint[1] / logPoints.size();
+        }
+        double covariance = 0;
+        double variance = 0;
+        double maxSegment = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < logPoints.size(); i++) {
+            final double[] logPoint = logPoints.get(i);
+            covariance += (logPoint[0] - meanX) * (logPoint[1] - meanY);
+            variance += (logPoint[0] - meanX) * (logPoint[0] - meanX);
+            if (i > 0) {
+                final double[] previous = logPoints.get(i - 1);
+                maxSegment = Math.max(maxSegment, (logPoint[1] - previous[1]) / (logPoint[0] - previous[0]));
+            }
+        }
+        slope.put("overall", covariance / variance);
+        slope.put("maxSegment", maxSegment);
+        return slope;
+    }
+
+    private static <T> @NotNull ImmutableList<T> parseList(
+            final @NotNull String property,
+            final @NotNull String defaultValue,
+            final @NotNull Function<@NotNull String, T> parser) {
+        final ImmutableList.Builder<T> values = ImmutableList.builder();
+        for (final String value : System.getProperty(property, defaultValue).split(",")) {
+            values.add(parser.apply(value.trim()));
+        }
+        return values.build();
+    }
+}
@@ -0,0 +1,94 @@
+package com.hivemq.tha.sar.qa.benchmark;
+
+import com.google.common.collect.ImmutableList;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionClient;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionServerExtension;
+import com.hivemq.tha.sar.qa.subscription.TopicTreeGenerator;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class SubscriptionClientBenchmark {
+
+    private static final int TOPIC_COUNT = 1024;
+    private static final int CLIENT_COUNT = 100;
+    private static final int FAN_OUT = 10;
+    private static final long SEED = 42;
+
+    @Param({"1000", "10000"})
+    public int subscriptionCount;
+
+    @Param({"3", "6"})
+    public int topicDepth;
+
+    @Param({"0.0", "0.2"})
+    public double wildcardRatio;
+
+    @Param({"1", "4"})
+    public int serverThreadCount;
+
+    private @NotNull SubscriptionServerExtension server;
+    private @NotNull SubscriptionClient client;
+    private @NotNull TopicTreeGenerator generator;
+    private @NotNull String @NotNull [] topics;
+    private final @NotNull AtomicInteger nextTopic = new AtomicInteger();
+    private final @NotNull AtomicInteger nextSubscription = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = BenchmarkServers.start(serverThreadCount, Duration.ofSeconds(10));
+        client = SubscriptionClient.newBuilder()
+                .setPort(server.getPort())
+                .setRequestTimeout(server.getRequestTimeout())
+                .build();
+        generator = new TopicTreeGenerator(SEED, topicDepth, FAN_OUT, wildcardRatio);
+        client.addSubscriptions(generator.nextSubscriptions(subscriptionCount, CLIENT_COUNT), 1000);
+        topics = new String[TOPIC_COUNT];
+        for (int i = 0; i < TOPIC_COUNT; i++) {
+            topics[i] = generator.nextTopic();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        server.stop();
+    }
+
+    @Benchmark
+    public void addSubscription() throws IOException, InterruptedException {
+        final int subscription = nextSubscription.getAndIncrement();
+        client.addSubscription(topics[subscription & (TOPIC_COUNT - 1)] + "/added" + subscription, "added");
+    }
+
+    @Benchmark
+    public long getSubscriptionCount() throws IOException, InterruptedException {
+        return client.getSubscriptionCount();
+    }
+
+    @Benchmark
+    public @NotNull ImmutableList<String> getMatchingSubscribers() throws IOException, InterruptedException {
+        return client.getMatchingSubscribers(topics[nextTopic.getAndIncrement() & (TOPIC_COUNT - 1)]);
+    }
+}
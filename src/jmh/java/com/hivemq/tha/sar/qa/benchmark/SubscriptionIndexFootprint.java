@@ -0,0 +1,88 @@
+package com.hivemq.tha.sar.qa.benchmark;
+
+import com.hivemq.tha.sar.qa.subscription.CompactSubscriptionIndex;
+import com.hivemq.tha.sar.qa.subscription.InMemorySubscriptionStore;
+import com.hivemq.tha.sar.qa.subscription.Subscription;
+import com.hivemq.tha.sar.qa.subscription.TopicTreeGenerator;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Compares the retained heap per subscription of the naive {@code Map<String, Set<String>>} layout with the trie
+ * based stores. Each layout is filled from freshly generated strings, so it retains exactly the strings it keeps.
+ * <p>
+ * Configured through system properties: {@code footprint.subscriptions}, {@code footprint.clients},
+ * {@code footprint.depth}, {@code footprint.fanOut} and {@code footprint.wildcardRatio}.
+ */
+public class SubscriptionIndexFootprint {
+
+    private static final long SEED = 42;
+    private static final int GC_ROUNDS = 5;
+
+    private interface Layout {
+
+        void add(@NotNull String topicFilter, @NotNull String clientId);
+    }
+
+    public static void main(final @NotNull String @NotNull [] args) throws InterruptedException {
+        final int subscriptions = Integer.getInteger("footprint.subscriptions", 500_000);
+        final int clients = Integer.getInteger("footprint.clients", 100);
+        final int depth = Integer.getInteger("footprint.depth", 5);
+        final int fanOut = Integer.getInteger("footprint.fanOut", 20);
+        final double wildcardRatio = Double.parseDouble(System.getProperty("footprint.wildcardRatio", "0.1"));
+
+        System.out.printf("%d subscriptions, %d clients, depth %d, fan-out %d, wildcard ratio %.2f%n",
+                subscriptions, clients, depth, fanOut, wildcardRatio);
+        measure("Map<String, Set<String>>", subscriptions, () -> {
+            final Map<String, Set<String>> layout = new HashMap<>();
+            return (topicFilter, clientId) ->
+                    layout.computeIfAbsent(topicFilter, filter -> new HashSet<>()).add(clientId);
+        }, clients, depth, fanOut, wildcardRatio);
+        measure("InMemorySubscriptionStore", subscriptions, () -> {
+            final InMemorySubscriptionStore layout = new InMemorySubscriptionStore();
+            return layout::addSubscription;
+        }, clients, depth, fanOut, wildcardRatio);
+        measure("CompactSubscriptionIndex", subscriptions, () -> {
+            final CompactSubscriptionIndex layout = new CompactSubscriptionIndex();
+            return layout::addSubscription;
+        }, clients, depth, fanOut, wildcardRatio);
+    }
+
+    private static void measure(
+            final @NotNull String name,
+            final int subscriptions,
+            final @NotNull Supplier<@NotNull Layout> layoutFactory,
+            final int clients,
+            final int depth,
+            final int fanOut,
+            final double wildcardRatio) throws InterruptedException {
+        final TopicTreeGenerator generator = new TopicTreeGenerator(SEED, depth, fanOut, wildcardRatio);
+        final long before = usedHeapAfterGc();
+        final Layout layout = layoutFactory.get();
+        for (int i = 0; i < subscriptions; i++) {
+            final Subscription subscription = generator.nextSubscriptions(1, clients).get(0);
+            layout.add(subscription.getTopicFilter(), subscription.getClientId());
+        }
+        final long retained = usedHeapAfterGc() - before;
+        System.out.printf("%-28s %,14d bytes %8.1f bytes/subscription%n",
+                name, retained, (double) retained / subscriptions);
+        Reference.reachabilityFence(layout);
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < GC_ROUNDS; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,54 @@
+package com.hivemq.tha.sar.qa;
+
+import com.google.common.collect.ImmutableList;
+import com.hivemq.tha.sar.qa.subscription.CompactSubscriptionIndex;
+import com.hivemq.tha.sar.qa.subscription.InMemorySubscriptionStore;
+import com.hivemq.tha.sar.qa.subscription.Subscription;
+import com.hivemq.tha.sar.qa.subscription.TopicTreeGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactSubscriptionIndexTest {
+
+    @Test
+    public void matchesAgreeWithInMemoryStore() {
+        final CompactSubscriptionIndex index = new CompactSubscriptionIndex();
+        final InMemorySubscriptionStore store = new InMemorySubscriptionStore();
+        final TopicTreeGenerator generator = new TopicTreeGenerator(11, 4, 4, 0.4);
+        final List<Subscription> subscriptions = generator.nextSubscriptions(20_000, 2_000);
+        for (final Subscription subscription : subscriptions) {
+            index.addSubscription(subscription.getTopicFilter(), subscription.getClientId());
+            store.addSubscription(subscription.getTopicFilter(), subscription.getClientId());
+        }
+        assertEquals(store.getSubscriptionCount(), index.getSubscriptionCount());
+        for (int i = 0; i < 1_000; i++) {
+            final String topic = generator.nextTopic();
+            assertEquals(store.getMatchingSubscribers(topic), index.getMatchingSubscribers(topic), topic);
+        }
+    }
+
+    @Test
+    public void denseSubscriberSetsSwitchToBitmaps() {
+        final CompactSubscriptionIndex index = new CompactSubscriptionIndex();
+        for (int i = 0; i < 10_000; i++) {
+            index.addSubscription("building/#", "client" + i);
+            index.addSubscription("building/floor/" + i, "firstFloor");
+        }
+        index.addSubscription("building/#", "client42");
+        assertEquals(10_001, index.getSubscriptionCount());
+        final ImmutableList<String> subscribers = index.getMatchingSubscribers("building/floor/7");
+        assertEquals(10_001, subscribers.size());
+        assertEquals("client0", subscribers.get(0));
+        assertEquals("firstFloor", subscribers.get(1));
+        assertTrue(index.isStoredAsBitmap("building/#"));
+        // A single small client index takes less memory as an array than as a bitmap with its overhead.
+        assertFalse(index.isStoredAsBitmap("building/floor/7"));
+
+        // A single high client index takes less memory as an array than as a bitmap up to that index.
+        index.addSubscription("building/lobby", "client9999");
+        assertFalse(index.isStoredAsBitmap("building/lobby"));
+    }
+}
@@ -0,0 +1,112 @@
+package com.hivemq.tha.sar.qa;
+
+import com.google.common.collect.ImmutableList;
+import com.hivemq.tha.sar.qa.subscription.InMemorySubscriptionStore;
+import com.hivemq.tha.sar.qa.subscription.Subscription;
+import com.hivemq.tha.sar.qa.subscription.TopicTreeGenerator;
+import com.hivemq.tha.sar.qa.subscription.Topics;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemorySubscriptionStoreTest {
+
+    private @NotNull InMemorySubscriptionStore store;
+
+    @BeforeEach
+    public void setUp() {
+        store = new InMemorySubscriptionStore();
+    }
+
+    @Test
+    public void countIsNumberOfDistinctClients() {
+        store.addSubscription("building/floor/firstfloor/105", "firstFloor");
+        store.addSubscription("building/floor/firstfloor/106", "firstFloor");
+        store.addSubscription("building/floor/firstfloor/106", "firstFloor");
+        store.addSubscription("building/floor/secondfloor/201", "secondFloor");
+        assertEquals(2, store.getSubscriptionCount());
+    }
+
+    @Test
+    public void matchReturnsEachClientOnceInSubscriptionOrder() {
+        store.addSubscription("building/floor/firstfloor/106", "firstFloor");
+        store.addSubscription("building/floor/+/106", "secondFloor");
+        store.addSubscription("building/#", "thirdFloor");
+        store.addSubscription("building/floor/firstfloor/#", "firstFloor");
+        store.addSubscription("building/floor/secondfloor/106", "fourthFloor");
+        assertEquals(
+                ImmutableList.of("firstFloor", "secondFloor", "thirdFloor"),
+                store.getMatchingSubscribers("building/floor/firstfloor/106"));
+        assertEquals(
+                ImmutableList.of("firstFloor", "thirdFloor"),
+                store.getMatchingSubscribers("building/floor/firstfloor"));
+        assertEquals(ImmutableList.of("thirdFloor"), store.getMatchingSubscribers("building"));
+        assertEquals(ImmutableList.of(), store.getMatchingSubscribers("elsewhere"));
+    }
+
+    @Test
+    public void rootWildcardsDoNotMatchSystemTopics() {
+        store.addSubscription("#", "all");
+        store.addSubscription("+/stats", "stats");
+        store.addSubscription("$SYS/#", "system");
+        assertEquals(ImmutableList.of("system"), store.getMatchingSubscribers("$SYS/stats"));
+        assertEquals(ImmutableList.of("all", "stats"), store.getMatchingSubscribers("broker/stats"));
+    }
+
+    @Test
+    public void matchAgreesWithBruteForceMatcher() {
+        final TopicTreeGenerator generator = new TopicTreeGenerator(7, 5, 3, 0.5);
+        final List<Subscription> subscriptions = generator.nextSubscriptions(2_000, 50);
+        subscriptions.forEach(subscription ->
+                store.addSubscription(subscription.getTopicFilter(), subscription.getClientId()));
+        for (int i = 0; i < 500; i++) {
+            final String topic = generator.nextTopic();
+            final Set<String> expected = new LinkedHashSet<>();
+            for (final Subscription subscription : subscriptions) {
+                if (Topics.matches(subscription.getTopicFilter(), topic)) {
+                    expected.add(subscription.getClientId());
+                }
+            }
+            assertEquals(expected, new LinkedHashSet<>(store.getMatchingSubscribers(topic)), topic);
+        }
+    }
+
+    @Test
+    public void matchesRunConcurrentlyWithAdds() throws Exception {
+        store.addSubscription("building/#", "stable");
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final AtomicBoolean adding = new AtomicBoolean(true);
+        try {
+            final List<Future<?>> readers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                readers.add(executor.submit(() -> {
+                    while (adding.get()) {
+                        assertTrue(store.getMatchingSubscribers("building/floor/1").contains("stable"));
+                    }
+                }));
+            }
+            for (int i = 0; i < 20_000; i++) {
+                store.addSubscription("building/floor/" + (i % 100), "client" + i);
+            }
+            adding.set(false);
+            for (final Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(20_001, store.getSubscriptionCount());
+        assertEquals(201, store.getMatchingSubscribers("building/floor/1").size());
+    }
+}
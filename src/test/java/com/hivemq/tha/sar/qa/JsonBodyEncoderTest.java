@@ -0,0 +1,66 @@
+package com.hivemq.tha.sar.qa;
+
+import com.hivemq.tha.sar.qa.subscription.JsonBodyEncoder;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonBodyEncoderTest {
+
+    @Test
+    public void escapedStringsRoundTripThroughJsonObject() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            final StringBuilder value = new StringBuilder();
+            final int length = random.nextInt(20);
+            while (value.length() < length) {
+                switch (random.nextInt(4)) {
+                    case 0:
+                        value.append((char) random.nextInt(0x80));
+                        break;
+                    case 1:
+                        value.append("\"\\/</\u2028");
+                        break;
+                    case 2:
+                        value.append((char) (0x80 + random.nextInt(0xD800 - 0x80)));
+                        break;
+                    default:
+                        value.appendCodePoint(0x10000 + random.nextInt(0x100000));
+                }
+            }
+            final JsonBodyEncoder encoder =
+                    JsonBodyEncoder.get().beginObject().field("topic", value.toString()).endObject();
+            final byte[] body = encoder.toByteArray();
+            assertEquals(encoder.size(), body.length);
+            assertEquals(value.toString(), new JSONObject(new String(body, StandardCharsets.UTF_8)).getString("topic"));
+        }
+    }
+
+    @Test
+    public void unpairedSurrogatesAreReplaced() {
+        final String body = JsonBodyEncoder.get().beginObject().field("topic", "a\uD800b\uDC00").endObject().toString();
+        assertEquals("{\"topic\":\"a?b?\"}", body);
+    }
+
+    @Test
+    public void nullValuesAreOmittedAndNestedValuesSeparated() {
+        final JsonBodyEncoder encoder = JsonBodyEncoder.get()
+                .beginObject()
+                .beginArray("subscriptions")
+                .beginObject().field("topicFilter", "a/+").field("clientId", "first").endObject()
+                .beginObject().field("topicFilter", "b/#").field("clientId", null).endObject()
+                .endArray()
+                .endObject();
+        final JSONArray subscriptions = new JSONObject(encoder.toString()).getJSONArray("subscriptions");
+        assertEquals(2, subscriptions.length());
+        assertEquals("first", subscriptions.getJSONObject(0).getString("clientId"));
+        assertEquals(1, subscriptions.getJSONObject(1).length());
+        assertEquals(
+                "{\"topic\":\"x\"}", JsonBodyEncoder.get().beginObject().field("topic", "x").endObject().toString());
+    }
+}
@@ -0,0 +1,48 @@
+package com.hivemq.tha.sar.qa;
+
+import com.hivemq.tha.sar.qa.subscription.LatencyHistogram;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentilesAreWithinRelativeErrorBound() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.recordNanos(value * 1_000);
+        }
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000_000, histogram.getMaxNanos());
+        assertEquals(50_000_000, histogram.getValueAtPercentileNanos(50), 50_000_000 / 64.0);
+        assertEquals(99_000_000, histogram.getValueAtPercentileNanos(99), 99_000_000 / 64.0);
+        assertEquals(99_900_000, histogram.getValueAtPercentileNanos(99.9), 99_900_000 / 64.0);
+        assertTrue(histogram.getValueAtPercentileNanos(50) >= 50_000_000);
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(3);
+        histogram.recordNanos(7);
+        histogram.recordNanos(Long.MAX_VALUE);
+        assertEquals(3, histogram.getValueAtPercentileNanos(0));
+        assertEquals(7, histogram.getValueAtPercentileNanos(50));
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentileNanos(100));
+    }
+
+    @Test
+    public void addMergesCounts() {
+        final LatencyHistogram first = new LatencyHistogram();
+        final LatencyHistogram second = new LatencyHistogram();
+        first.recordNanos(10);
+        second.recordNanos(1_000_000);
+        first.add(second);
+        assertEquals(2, first.getCount());
+        assertEquals(1_000_000, first.getMaxNanos());
+        first.reset();
+        assertEquals(0, first.getCount());
+        assertEquals(0, first.getValueAtPercentileNanos(99));
+    }
+}
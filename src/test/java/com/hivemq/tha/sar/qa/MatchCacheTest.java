@@ -0,0 +1,59 @@
+package com.hivemq.tha.sar.qa;
+
+import com.google.common.collect.ImmutableList;
+import com.hivemq.tha.sar.qa.subscription.MatchCache;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MatchCacheTest {
+
+    @Test
+    public void addsOnlyInvalidateMatchingTopics() {
+        final MatchCache matchCache = new MatchCache(100);
+        matchCache.put("a/b", ImmutableList.of("a"), matchCache.getGeneration());
+        matchCache.put("c/b", ImmutableList.of("c"), matchCache.getGeneration());
+        matchCache.put("a/+", ImmutableList.of("wildcard"), matchCache.getGeneration());
+
+        matchCache.invalidateMatching("a/c");
+        assertEquals(ImmutableList.of("a"), matchCache.get("a/b"));
+        assertEquals(ImmutableList.of("c"), matchCache.get("c/b"));
+        assertNull(matchCache.get("a/+"));
+
+        matchCache.invalidateMatching("+/b");
+        assertNull(matchCache.get("a/b"));
+        assertNull(matchCache.get("c/b"));
+        assertEquals(0, matchCache.size());
+    }
+
+    @Test
+    public void resultsFetchedDuringAnAddAreOnlyDroppedIfTheAddCouldCoverThem() {
+        final MatchCache matchCache = new MatchCache(100);
+        final long generation = matchCache.getGeneration();
+        matchCache.invalidateMatching("a/c");
+        matchCache.put("a/b", ImmutableList.of("a"), generation);
+        matchCache.put("c/b", ImmutableList.of("c"), generation);
+        matchCache.put("c/+", ImmutableList.of("wildcard"), generation);
+        assertNull(matchCache.get("a/b"));
+        assertEquals(ImmutableList.of("c"), matchCache.get("c/b"));
+        assertNull(matchCache.get("c/+"));
+
+        final long nextGeneration = matchCache.getGeneration();
+        matchCache.invalidateMatching("#");
+        matchCache.put("c/b", ImmutableList.of("c"), nextGeneration);
+        assertNull(matchCache.get("c/b"));
+    }
+
+    @Test
+    public void entriesCachedAgainAfterEvictionAreInvalidated() {
+        final MatchCache matchCache = new MatchCache(1);
+        matchCache.put("a/b", ImmutableList.of("a"), matchCache.getGeneration());
+        matchCache.put("a/c", ImmutableList.of("a"), matchCache.getGeneration());
+        assertEquals(1, matchCache.getEvictionCount());
+        matchCache.put("a/b", ImmutableList.of("b"), matchCache.getGeneration());
+        assertEquals(ImmutableList.of("b"), matchCache.get("a/b"));
+        matchCache.invalidateMatching("a/b");
+        assertNull(matchCache.get("a/b"));
+        assertEquals(0, matchCache.size());
+    }
+}
@@ -0,0 +1,53 @@
+package com.hivemq.tha.sar.qa;
+
+import com.hivemq.tha.sar.qa.subscription.ResourceReport;
+import com.hivemq.tha.sar.qa.subscription.ServerInstrumentation;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionClient;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionServerExtension;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServerInstrumentationSystemTest {
+
+    @RegisterExtension
+    public static final @NotNull SubscriptionServerExtension SERVER = SubscriptionServerExtension.newBuilder()
+            .setShellPath("/bin/bash")
+            .setJavaPath("/usr/bin/java")
+            .setThreadCount(2)
+            .setRequestTimeout(Duration.ofSeconds(10))
+            .setStartTimeout(Duration.ofSeconds(20))
+            .setInstrumentation(ServerInstrumentation.newBuilder().setSampleInterval(Duration.ofMillis(50)).build())
+            .build();
+
+    @Test
+    public void instrumentedServerIsSampledAndRecorded() throws Exception {
+        final SubscriptionClient client = new SubscriptionClient(SERVER.getPort(), SERVER.getRequestTimeout());
+        for (int i = 0; i < 100; i++) {
+            client.addSubscription("instrumentation/floor/" + i, "client" + i);
+        }
+        Thread.sleep(200);
+
+        final ResourceReport report = SERVER.getResourceReport();
+        assertNotNull(report);
+        assertTrue(report.getSamples().size() > 1, report::toString);
+        assertTrue(report.getPeakRssBytes() > 0, report::toString);
+        assertTrue(report.getPeakThreadCount() > 2, report::toString);
+        assertTrue(report.getCpuTime().compareTo(Duration.ZERO) > 0, report::toString);
+        assertEquals(1, report.since(System.nanoTime()).getSamples().size());
+
+        SERVER.stop();
+        final Path flightRecordingFile = SERVER.getFlightRecordingFile();
+        final Path gcLogFile = SERVER.getGcLogFile();
+        assertNotNull(flightRecordingFile);
+        assertNotNull(gcLogFile);
+        assertTrue(Files.size(flightRecordingFile) > 0, flightRecordingFile::toString);
+        assertTrue(Files.size(gcLogFile) > 0, gcLogFile::toString);
+    }
+}
@@ -0,0 +1,140 @@
+package com.hivemq.tha.sar.qa;
+
+import com.google.common.collect.ImmutableList;
+import com.hivemq.tha.sar.qa.subscription.ShardedSubscriptionClient;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionClient;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionServerExtension;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedSubscriptionClientSystemTest {
+
+    @RegisterExtension
+    public static final @NotNull SubscriptionServerExtension SERVER_0 = newServer();
+    @RegisterExtension
+    public static final @NotNull SubscriptionServerExtension SERVER_1 = newServer();
+    @RegisterExtension
+    public static final @NotNull SubscriptionServerExtension SERVER_2 = newServer();
+
+    private @NotNull ShardedSubscriptionClient client;
+
+    @BeforeEach
+    public void setUp() throws URISyntaxException {
+        client = ShardedSubscriptionClient.newBuilder()
+                .addShard(newClient(SERVER_0))
+                .addShard(newClient(SERVER_1))
+                .addShard(newClient(SERVER_2))
+                .setShardForFirstLevel("pinned", 2)
+                .build();
+    }
+
+    @Test
+    public void concreteFiltersAreAddedToTheShardOfTheirFirstLevelOnly() throws Exception {
+        final long initialCount = client.getSubscriptionCount();
+        final Set<Integer> usedShardIndexes = new HashSet<>();
+        for (int i = 0; i < 30; i++) {
+            client.addSubscription("concrete" + i + "/floor/+", "concrete" + i);
+            usedShardIndexes.add(client.getShardIndex("concrete" + i));
+        }
+        client.addSubscription("pinned/floor/1", "pinned");
+        assertEquals(Set.of(0, 1, 2), usedShardIndexes);
+        assertEquals(2, client.getShardIndex("pinned/floor/1"));
+
+        for (int i = 0; i < 30; i++) {
+            final String topic = "concrete" + i + "/floor/1";
+            assertEquals(ImmutableList.of("concrete" + i), client.getMatchingSubscribers(topic));
+            for (int shardIndex = 0; shardIndex < 3; shardIndex++) {
+                final ImmutableList<String> shardSubscribers =
+                        client.getShards().get(shardIndex).getMatchingSubscribers(topic);
+                assertEquals(shardIndex == client.getShardIndex(topic), !shardSubscribers.isEmpty(), topic);
+            }
+        }
+        assertEquals(ImmutableList.of("pinned"), client.getShards().get(2).getMatchingSubscribers("pinned/floor/1"));
+        assertEquals(initialCount + 31, client.getSubscriptionCount());
+    }
+
+    @Test
+    public void deeperWildcardsAreAddedToTheShardOfTheirFirstLevelOnly() throws Exception {
+        client.addSubscription("deeper/+/floor", "deeperSingleLevel");
+        client.addSubscription("deeper/#", "deeperMultiLevel");
+        final int shardIndex = client.getShardIndex("deeper");
+        for (int i = 0; i < 3; i++) {
+            final Set<String> expected = i == shardIndex ? Set.of("deeperSingleLevel", "deeperMultiLevel") : Set.of();
+            final ImmutableList<String> subscribers =
+                    client.getShards().get(i).getMatchingSubscribers("deeper/building/floor");
+            assertEquals(expected, Set.copyOf(subscribers), "Shard " + i);
+        }
+    }
+
+    @Test
+    public void wildcardFiltersAreAddedToEveryShard() throws Exception {
+        final ImmutableList<Long> initialShardCounts = client.getShardSubscriptionCounts();
+        final long initialCount = client.getSubscriptionCount();
+        client.addSubscription("+/wildcard-floor", "wildcard");
+        for (int i = 0; i < 10; i++) {
+            client.addSubscription("wildcard" + i + "/wildcard-floor", "wildcard" + i);
+        }
+        // The wildcard client is counted once locally, but by every shard.
+        assertEquals(11, client.getLocalClientCount());
+        assertEquals(initialCount + 13, client.getSubscriptionCount());
+        final ImmutableList<Long> shardCounts = client.getShardSubscriptionCounts();
+        long shardCountGrowth = 0;
+        for (int i = 0; i < 3; i++) {
+            shardCountGrowth += shardCounts.get(i) - initialShardCounts.get(i);
+        }
+        assertEquals(13, shardCountGrowth);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(
+                    Set.of("wildcard" + i, "wildcard"),
+                    Set.copyOf(client.getMatchingSubscribers("wildcard" + i + "/wildcard-floor")));
+        }
+        for (final SubscriptionClient shard : client.getShards()) {
+            assertEquals(ImmutableList.of("wildcard"), shard.getMatchingSubscribers("elsewhere/wildcard-floor"));
+        }
+    }
+
+    @Test
+    public void failedShardsOfAWildcardFilterAreReported() throws Exception {
+        final int closedPort;
+        try (final ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        final ShardedSubscriptionClient partialClient = ShardedSubscriptionClient.newBuilder()
+                .addShard(newClient(SERVER_0))
+                .addShard(new SubscriptionClient(closedPort, Duration.ofSeconds(10)))
+                .build();
+        final IOException exception =
+                assertThrows(IOException.class, () -> partialClient.addSubscription("+/partial-floor", "partial"));
+        assertTrue(exception.getMessage().contains("shards [1] of 2"), exception::toString);
+        assertEquals(1, exception.getSuppressed().length, exception::toString);
+        assertEquals(ImmutableList.of("partial"), client.getShards().get(0).getMatchingSubscribers("a/partial-floor"));
+        assertEquals(0, partialClient.getLocalClientCount());
+    }
+
+    private static @NotNull SubscriptionServerExtension newServer() {
+        return SubscriptionServerExtension.newBuilder()
+                .setShellPath("/bin/bash")
+                .setJavaPath("/usr/bin/java")
+                .setThreadCount(1)
+                .setRequestTimeout(Duration.ofSeconds(10))
+                .setStartTimeout(Duration.ofSeconds(20))
+                .setLifecycle(SubscriptionServerExtension.Lifecycle.PER_CLASS)
+                .build();
+    }
+
+    private static @NotNull SubscriptionClient newClient(final @NotNull SubscriptionServerExtension server)
+            throws URISyntaxException {
+        return new SubscriptionClient(server.getPort(), server.getRequestTimeout());
+    }
+}
@@ -0,0 +1,325 @@
+package com.hivemq.tha.sar.qa;
+
+import com.google.common.collect.ImmutableList;
+import com.hivemq.tha.sar.qa.subscription.CircuitBreaker;
+import com.hivemq.tha.sar.qa.subscription.CircuitBreakerOpenException;
+import com.hivemq.tha.sar.qa.subscription.HedgingPolicy;
+import com.hivemq.tha.sar.qa.subscription.HttpStatusException;
+import com.hivemq.tha.sar.qa.subscription.InMemorySubscriptionClientMetrics;
+import com.hivemq.tha.sar.qa.subscription.RetryPolicy;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionClient;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionClientMetrics.Endpoint;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionServerExtension;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionServerPool;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Saturates a server with a single thread with many more concurrent requests than it answers within the client's
+ * short request timeout.
+ */
+public class SubscriptionClientResilienceSystemTest {
+
+    private static final @NotNull Duration REQUEST_TIMEOUT = Duration.ofMillis(50);
+
+    @RegisterExtension
+    public static final @NotNull SubscriptionServerPool SERVERS = SubscriptionServerPool.newBuilder()
+            .setShellPath("/bin/bash")
+            .setJavaPath("/usr/bin/java")
+            .setThreadCount(1)
+            .setRequestTimeout(Duration.ofSeconds(10))
+            .setStartTimeout(Duration.ofSeconds(20))
+            .setSize(1)
+            .build();
+
+    @Test
+    public void retriedMatchesSucceedOnASaturatedServer(final @NotNull SubscriptionServerExtension server)
+            throws Exception {
+        new SubscriptionClient(server.getPort(), Duration.ofSeconds(10)).addSubscription("retried/+", "retried");
+        final InMemorySubscriptionClientMetrics plainMetrics = new InMemorySubscriptionClientMetrics();
+        final SubscriptionClient plainClient = newClientBuilder(server).setMetrics(plainMetrics).build();
+        assertTrue(countFailures(getMatchingSubscribers(plainClient, "retried")) > 0, plainMetrics::toString);
+        final InMemorySubscriptionClientMetrics.EndpointMetrics plainMatch =
+                plainMetrics.get(Endpoint.GET_MATCHING_SUBSCRIBERS);
+        assertEquals(500, plainMatch.getRequestCount(), plainMetrics::toString);
+
+        final InMemorySubscriptionClientMetrics metrics = new InMemorySubscriptionClientMetrics();
+        final SubscriptionClient client = newClientBuilder(server)
+                .setMetrics(metrics)
+                .setRetryPolicy(RetryPolicy.newBuilder()
+                        .setMaxAttempts(50)
+                        .setInitialBackoff(Duration.ofMillis(20))
+                        .setMaxBackoff(Duration.ofMillis(500))
+                        .build())
+                .build();
+        for (final CompletableFuture<ImmutableList<String>> future : getMatchingSubscribers(client, "retried")) {
+            assertEquals(ImmutableList.of("retried"), future.join());
+        }
+        final InMemorySubscriptionClientMetrics.EndpointMetrics match = metrics.get(Endpoint.GET_MATCHING_SUBSCRIBERS);
+        assertTrue(match.getRetryCount() > 0, metrics::toString);
+        assertTrue(match.getTimeoutCount() > 0, metrics::toString);
+        // Every retry sends the same request again.
+        assertEquals(500 + match.getRetryCount(), match.getRequestCount(), metrics::toString);
+        assertTrue(match.getBytesSent() > plainMatch.getBytesSent(), metrics::toString);
+
+        // An add that timed out may have been processed, and adding it again would report it twice.
+        addSubscriptions(client, "retried-add");
+        assertEquals(0, metrics.get(Endpoint.ADD_SUBSCRIPTION).getRetryCount(), metrics::toString);
+    }
+
+    @Test
+    public void circuitBreakerFailsFastWhileTheServerIsSaturated(final @NotNull SubscriptionServerExtension server)
+            throws Exception {
+        final InMemorySubscriptionClientMetrics metrics = new InMemorySubscriptionClientMetrics();
+        final CircuitBreaker circuitBreaker = CircuitBreaker.newBuilder()
+                .setFailureThreshold(5)
+                .setOpenDuration(Duration.ofMillis(200))
+                .build();
+        final SubscriptionClient client = newClientBuilder(server)
+                .setMetrics(metrics)
+                .setCircuitBreaker(circuitBreaker)
+                .build();
+        final List<CompletableFuture<Void>> futures = addSubscriptions(client, "breaker");
+        assertTrue(countFailures(futures) > 0, metrics::toString);
+        assertTrue(futures.stream().anyMatch(
+                future -> future.handle((result, throwable) -> throwable instanceof CompletionException &&
+                        throwable.getCause() instanceof CircuitBreakerOpenException).join()));
+        assertTrue(circuitBreaker.getOpenCount() > 0, metrics::toString);
+        assertEquals(circuitBreaker.getOpenCount(), metrics.getCircuitBreakerOpenCount());
+        assertEquals(circuitBreaker.getRejectedCount(), metrics.get(Endpoint.ADD_SUBSCRIPTION).getRejectionCount());
+
+        // The server still works through the requests that timed out, so the probes may time out for a while.
+        final long deadline = System.nanoTime() + Duration.ofSeconds(20).toNanos();
+        while (true) {
+            try {
+                client.getSubscriptionCount();
+                break;
+            } catch (final IOException e) {
+                assertTrue(System.nanoTime() - deadline < 0, () -> "Breaker did not close: " + e);
+                Thread.sleep(100);
+            }
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void probeThatCannotBeSentLetsTheNextRequestProbe() throws Exception {
+        final int closedPort;
+        try (final ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        final CircuitBreaker circuitBreaker = CircuitBreaker.newBuilder()
+                .setFailureThreshold(1)
+                .setOpenDuration(Duration.ofMillis(10))
+                .build();
+        final SubscriptionClient refusedClient = SubscriptionClient.newBuilder()
+                .setPort(closedPort)
+                .setRequestTimeout(REQUEST_TIMEOUT)
+                .setCircuitBreaker(circuitBreaker)
+                .build();
+        final SubscriptionClient rejectingClient = SubscriptionClient.newBuilder()
+                .setPort(closedPort)
+                .setRequestTimeout(REQUEST_TIMEOUT)
+                .setCircuitBreaker(circuitBreaker)
+                .setExecutor(command -> {
+                    throw new RejectedExecutionException("Executor is shut down");
+                })
+                .build();
+        assertThrows(ConnectException.class, refusedClient::getSubscriptionCount);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        Thread.sleep(20);
+
+        // The HTTP client throws instead of sending the probe.
+        final CompletionException exception =
+                assertThrows(CompletionException.class, rejectingClient.getSubscriptionCountAsync()::join);
+        assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertThrows(ConnectException.class, refusedClient::getSubscriptionCount);
+        assertEquals(0, circuitBreaker.getRejectedCount());
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void requestsSentBeforeTheBreakerOpenedDoNotChangeItWhenTheyComplete() throws Exception {
+        final CircuitBreaker circuitBreaker = CircuitBreaker.newBuilder()
+                .setFailureThreshold(1)
+                .setOpenDuration(Duration.ofMillis(10))
+                .build();
+        final CountDownLatch lateSuccessLatch = new CountDownLatch(1);
+        final CountDownLatch lateFailureLatch = new CountDownLatch(1);
+        final CountDownLatch probeLatch = new CountDownLatch(1);
+        final HttpServer lateSuccessServer = startHeldServer(200, lateSuccessLatch);
+        final HttpServer lateFailureServer = startHeldServer(503, lateFailureLatch);
+        final HttpServer probeServer = startHeldServer(200, probeLatch);
+        final int closedPort;
+        try (final ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        try {
+            final CompletableFuture<Long> lateSuccess =
+                    newHeldClient(lateSuccessServer, circuitBreaker).getSubscriptionCountAsync();
+            final CompletableFuture<Long> lateFailure =
+                    newHeldClient(lateFailureServer, circuitBreaker).getSubscriptionCountAsync();
+            final SubscriptionClient refusedClient = SubscriptionClient.newBuilder()
+                    .setPort(closedPort)
+                    .setRequestTimeout(REQUEST_TIMEOUT)
+                    .setCircuitBreaker(circuitBreaker)
+                    .build();
+            assertThrows(IOException.class, refusedClient::getSubscriptionCount);
+            assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+            lateSuccessLatch.countDown();
+            assertEquals(0, lateSuccess.join());
+            assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+            Thread.sleep(20);
+            final CompletableFuture<Long> probe =
+                    newHeldClient(probeServer, circuitBreaker).getSubscriptionCountAsync();
+            assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+            lateFailureLatch.countDown();
+            final CompletionException exception = assertThrows(CompletionException.class, lateFailure::join);
+            assertEquals(503, assertInstanceOf(HttpStatusException.class, exception.getCause()).getStatusCode());
+            assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+            assertEquals(1, circuitBreaker.getOpenCount());
+
+            probeLatch.countDown();
+            assertEquals(0, probe.join());
+            assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        } finally {
+            lateSuccessLatch.countDown();
+            lateFailureLatch.countDown();
+            probeLatch.countDown();
+            lateSuccessServer.stop(0);
+            lateFailureServer.stop(0);
+            probeServer.stop(0);
+        }
+    }
+
+    @Test
+    public void slowMatchesAreHedgedOnASaturatedServer(final @NotNull SubscriptionServerExtension server)
+            throws Exception {
+        final InMemorySubscriptionClientMetrics setupMetrics = new InMemorySubscriptionClientMetrics();
+        final SubscriptionClient setupClient = SubscriptionClient.newBuilder()
+                .setPort(server.getPort())
+                .setRequestTimeout(Duration.ofSeconds(10))
+                .setMetrics(setupMetrics)
+                .build();
+        setupClient.addSubscription("hedged/+", "hedged");
+        assertEquals(ImmutableList.of("hedged"), setupClient.getMatchingSubscribers("hedged/0"));
+        // No match below sends fewer bytes than the one with the shortest topic.
+        final long minRequestBytes = setupMetrics.get(Endpoint.GET_MATCHING_SUBSCRIBERS).getBytesSent();
+
+        final InMemorySubscriptionClientMetrics metrics = new InMemorySubscriptionClientMetrics();
+        final SubscriptionClient client = SubscriptionClient.newBuilder()
+                .setPort(server.getPort())
+                .setRequestTimeout(Duration.ofSeconds(10))
+                .setMetrics(metrics)
+                .setHedgingPolicy(HedgingPolicy.newBuilder()
+                        .setMinDelay(Duration.ofMillis(1))
+                        .setMaxDelay(Duration.ofMillis(5))
+                        .setWindowSize(50)
+                        .build())
+                .build();
+        final List<CompletableFuture<ImmutableList<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(client.getMatchingSubscribersAsync("hedged/" + i));
+        }
+        for (final CompletableFuture<ImmutableList<String>> future : futures) {
+            assertEquals(ImmutableList.of("hedged"), future.join());
+        }
+        final InMemorySubscriptionClientMetrics.EndpointMetrics match = metrics.get(Endpoint.GET_MATCHING_SUBSCRIBERS);
+        assertTrue(match.getHedgeCount() > 0, metrics::toString);
+        assertTrue(match.getHedgeWinCount() <= match.getHedgeCount(), metrics::toString);
+        // The losing requests may still be in flight.
+        final long exchangeCount = match.getExchangeLatency().getCount();
+        assertTrue(exchangeCount >= 200 && exchangeCount <= 200 + match.getHedgeCount(), metrics::toString);
+        // A hedge is counted after its request, so the hedges are read first.
+        final long hedgeCount = match.getHedgeCount();
+        final long requestCount = match.getRequestCount();
+        assertTrue(requestCount >= 200 + hedgeCount, metrics::toString);
+        assertTrue(match.getBytesSent() >= requestCount * minRequestBytes, metrics::toString);
+    }
+
+    private static @NotNull SubscriptionClient.Builder newClientBuilder(
+            final @NotNull SubscriptionServerExtension server) {
+        return SubscriptionClient.newBuilder()
+                .setPort(server.getPort())
+                .setRequestTimeout(REQUEST_TIMEOUT);
+    }
+
+    /**
+     * Answers every request with the status code once the latch is released. The server handles one request at a
+     * time, which is enough for the single request each test client sends.
+     */
+    private static @NotNull HttpServer startHeldServer(final int statusCode, final @NotNull CountDownLatch latch)
+            throws IOException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            try {
+                latch.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            final byte[] body = "{\"count\":0}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(statusCode, body.length);
+            try (final OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static @NotNull SubscriptionClient newHeldClient(
+            final @NotNull HttpServer server, final @NotNull CircuitBreaker circuitBreaker) throws URISyntaxException {
+        return SubscriptionClient.newBuilder()
+                .setPort(server.getAddress().getPort())
+                .setRequestTimeout(Duration.ofSeconds(10))
+                .setCircuitBreaker(circuitBreaker)
+                .build();
+    }
+
+    private static @NotNull List<CompletableFuture<Void>> addSubscriptions(
+            final @NotNull SubscriptionClient client, final @NotNull String prefix) throws InterruptedException {
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            futures.add(client.addSubscriptionAsync(prefix + "/floor/" + i, prefix + (i % 10)));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).handle((result, throwable) -> null).join();
+        return futures;
+    }
+
+    private static @NotNull List<CompletableFuture<ImmutableList<String>>> getMatchingSubscribers(
+            final @NotNull SubscriptionClient client, final @NotNull String prefix) throws InterruptedException {
+        final List<CompletableFuture<ImmutableList<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            futures.add(client.getMatchingSubscribersAsync(prefix + "/" + i));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).handle((result, throwable) -> null).join();
+        return futures;
+    }
+
+    private static long countFailures(final @NotNull List<? extends CompletableFuture<?>> futures) {
+        return futures.stream().filter(CompletableFuture::isCompletedExceptionally).count();
+    }
+}
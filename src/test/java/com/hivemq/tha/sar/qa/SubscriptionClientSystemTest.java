@@ -0,0 +1,251 @@
+package com.hivemq.tha.sar.qa;
+
+import com.google.common.collect.ImmutableList;
+import com.hivemq.tha.sar.qa.subscription.BulkAddResult;
+import com.hivemq.tha.sar.qa.subscription.InMemorySubscriptionClientMetrics;
+import com.hivemq.tha.sar.qa.subscription.MatchCache;
+import com.hivemq.tha.sar.qa.subscription.MatchCoalescer;
+import com.hivemq.tha.sar.qa.subscription.Subscription;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionClient;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionClientMetrics.Endpoint;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionServerExtension;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SubscriptionClientSystemTest {
+
+    @RegisterExtension
+    public static final @NotNull SubscriptionServerExtension SERVER = SubscriptionServerExtension.newBuilder()
+            .setShellPath("/bin/bash")
+            .setJavaPath("/usr/bin/java")
+            .setThreadCount(1)
+            .setRequestTimeout(Duration.ofSeconds(10))
+            .setStartTimeout(Duration.ofSeconds(10))
+            .setLifecycle(SubscriptionServerExtension.Lifecycle.PER_CLASS)
+            .build();
+
+    private @NotNull SubscriptionClient client;
+
+    @BeforeEach
+    public void setUp() throws URISyntaxException {
+        client = SubscriptionClient.newBuilder()
+                .setPort(SERVER.getPort())
+                .setRequestTimeout(SERVER.getRequestTimeout())
+                .setMaxInFlightRequests(4)
+                .build();
+    }
+
+    @Test
+    public void asyncAddSubscriptionsArePipelined() throws Exception {
+        final long initialCount = client.getSubscriptionCount();
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(client.addSubscriptionAsync("async/floor/" + i, "async" + (i % 10)));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        assertEquals(initialCount + 10, client.getSubscriptionCountAsync().join());
+        assertEquals(ImmutableList.of("async7"), client.getMatchingSubscribersAsync("async/floor/17").join());
+    }
+
+    @Test
+    public void asyncRejectedRequestCompletesExceptionally() throws Exception {
+        final CompletableFuture<Void> future = client.addSubscriptionAsync("rejected/floor", null);
+        final CompletionException exception = assertThrows(CompletionException.class, future::join);
+        assertTrue(exception.getCause() instanceof IOException);
+    }
+
+    @Test
+    public void bulkAddFallsBackToPipelinedSingleRequests() throws Exception {
+        final long initialCount = client.getSubscriptionCount();
+        final List<Subscription> subscriptions = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            subscriptions.add(new Subscription("bulk/floor/" + i, "bulk" + (i % 25)));
+        }
+        final InMemorySubscriptionClientMetrics metrics = new InMemorySubscriptionClientMetrics();
+        final SubscriptionClient bulkClient = SubscriptionClient.newBuilder()
+                .setPort(SERVER.getPort())
+                .setRequestTimeout(SERVER.getRequestTimeout())
+                .setMaxInFlightRequests(4)
+                .setMetrics(metrics)
+                .build();
+        final List<BulkAddResult.ChunkReport> reportedChunks = new ArrayList<>();
+        final BulkAddResult result = bulkClient.addSubscriptions(subscriptions, 100, reportedChunks::add);
+        assertEquals(3, result.getChunks().size());
+        assertEquals(result.getChunks(), reportedChunks);
+        assertEquals(250, result.getSubscriptionCount());
+        assertTrue(result.getFailedSubscriptions().isEmpty());
+        assertFalse(result.getChunks().get(0).isBatched());
+        // The server fails batch bodies with 500, which may be transient, so every chunk tries a batch first.
+        assertTrue(result.getChunks().stream().noneMatch(BulkAddResult.ChunkReport::isBatched));
+        final InMemorySubscriptionClientMetrics.EndpointMetrics batch = metrics.get(Endpoint.ADD_SUBSCRIPTIONS_BATCH);
+        assertEquals(3, batch.getRequestCount(), metrics::toString);
+        assertEquals(Map.of(500, 3L), batch.getErrorStatusCodes(), metrics::toString);
+        assertEquals(initialCount + 25, client.getSubscriptionCount());
+        assertEquals(ImmutableList.of("bulk17"), client.getMatchingSubscribers("bulk/floor/242"));
+    }
+
+    @Test
+    public void matchCacheIsInvalidatedBySubscriptionsMatchingTheCachedTopic() throws Exception {
+        final MatchCache matchCache = new MatchCache(2);
+        final SubscriptionClient cachingClient = SubscriptionClient.newBuilder()
+                .setPort(SERVER.getPort())
+                .setRequestTimeout(SERVER.getRequestTimeout())
+                .setMatchCache(matchCache)
+                .build();
+        cachingClient.addSubscription("cache/floor/1", "first");
+        cachingClient.addSubscription("cache/floor/2", "second");
+        assertEquals(ImmutableList.of("first"), cachingClient.getMatchingSubscribers("cache/floor/1"));
+        assertEquals(ImmutableList.of("second"), cachingClient.getMatchingSubscribers("cache/floor/2"));
+        assertEquals(ImmutableList.of("first"), cachingClient.getMatchingSubscribers("cache/floor/1"));
+        assertEquals(1, matchCache.getHitCount());
+        assertEquals(2, matchCache.getMissCount());
+
+        cachingClient.addSubscription("cache/+/1", "third");
+        assertEquals(ImmutableList.of("second"), cachingClient.getMatchingSubscribers("cache/floor/2"));
+        assertEquals(2, matchCache.getHitCount());
+        assertEquals(ImmutableList.of("first", "third"), cachingClient.getMatchingSubscribers("cache/floor/1"));
+        assertEquals(3, matchCache.getMissCount());
+
+        cachingClient.getMatchingSubscribers("cache/floor/3");
+        assertEquals(1, matchCache.getEvictionCount());
+    }
+
+    @Test
+    public void concurrentIdenticalMatchesShareOneRequest() throws Exception {
+        final MatchCoalescer matchCoalescer = new MatchCoalescer();
+        final InMemorySubscriptionClientMetrics metrics = new InMemorySubscriptionClientMetrics();
+        final SubscriptionClient coalescingClient = SubscriptionClient.newBuilder()
+                .setPort(SERVER.getPort())
+                .setRequestTimeout(SERVER.getRequestTimeout())
+                .setMatchCoalescer(matchCoalescer)
+                .setMetrics(metrics)
+                .build();
+        coalescingClient.addSubscription("coalesce/floor/1", "first");
+
+        final List<CompletableFuture<ImmutableList<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(coalescingClient.getMatchingSubscribersAsync("coalesce/floor/1"));
+        }
+        final Set<ImmutableList<String>> distinctResults = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (final CompletableFuture<ImmutableList<String>> future : futures) {
+            assertEquals(ImmutableList.of("first"), future.join());
+            distinctResults.add(future.join());
+        }
+        assertTrue(matchCoalescer.getCoalescedCount() > 0);
+        assertEquals(50, matchCoalescer.getRequestCount() + matchCoalescer.getCoalescedCount());
+        assertEquals(matchCoalescer.getRequestCount(), distinctResults.size());
+        assertEquals(
+                matchCoalescer.getRequestCount(), metrics.get(Endpoint.GET_MATCHING_SUBSCRIBERS).getRequestCount());
+        assertEquals(0, matchCoalescer.getInFlightCount());
+
+        coalescingClient.addSubscription("coalesce/+/1", "second");
+        assertEquals(ImmutableList.of("first", "second"), coalescingClient.getMatchingSubscribers("coalesce/floor/1"));
+    }
+
+    @Test
+    public void streamingMatchReadsSubscribersIncrementally() throws Exception {
+        final List<Subscription> subscriptions = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            subscriptions.add(new Subscription("streaming/floor/" + i, "streaming\"" + i + "\\"));
+        }
+        client.addSubscriptions(subscriptions, 500);
+        client.addSubscription("streaming-other/+", "wildcard");
+
+        final List<String> streamedSubscribers = new ArrayList<>();
+        client.getMatchingSubscribers("streaming/floor/42", streamedSubscribers::add);
+        assertEquals(List.of("streaming\"42\\"), streamedSubscribers);
+        assertEquals(
+                client.getMatchingSubscribers("streaming/floor/42"),
+                client.getMatchingSubscribersStreaming("streaming/floor/42"));
+        assertEquals(ImmutableList.of("wildcard"), client.getMatchingSubscribersStreaming("streaming-other/floor"));
+        assertEquals(ImmutableList.of(), client.getMatchingSubscribersStreaming("streaming-elsewhere"));
+    }
+
+    @Test
+    public void tunedHttpClientPipelinesOverKeptAliveConnections() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final SubscriptionClient tunedClient = SubscriptionClient.newBuilder()
+                    .setPort(SERVER.getPort())
+                    .setRequestTimeout(SERVER.getRequestTimeout())
+                    .setConnectTimeout(Duration.ofSeconds(1))
+                    .setHttpVersion(HttpClient.Version.HTTP_1_1)
+                    .setExecutor(executor)
+                    .setMaxInFlightRequests(8)
+                    .build();
+            final List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                futures.add(tunedClient.addSubscriptionAsync("tuned/floor/" + i, "tuned" + i));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            assertEquals(ImmutableList.of("tuned42"), tunedClient.getMatchingSubscribersAsync("tuned/floor/42").join());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void virtualThreadExecutorIsAvailableFromJava21() {
+        final ExecutorService executor = SubscriptionClient.newVirtualThreadExecutor();
+        assertEquals(Runtime.version().feature() >= 21, executor != null);
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void metricsRecordEveryPhaseOfEveryRequest() throws Exception {
+        final InMemorySubscriptionClientMetrics metrics = new InMemorySubscriptionClientMetrics();
+        final SubscriptionClient metricsClient = SubscriptionClient.newBuilder()
+                .setPort(SERVER.getPort())
+                .setRequestTimeout(SERVER.getRequestTimeout())
+                .setMetrics(metrics)
+                .build();
+        metricsClient.addSubscription("metrics/floor/1", "metrics1");
+        metricsClient.addSubscriptionAsync("metrics/floor/2", "metrics2").join();
+        assertThrows(IOException.class, () -> metricsClient.addSubscription("metrics/floor/3", null));
+        assertEquals(ImmutableList.of("metrics1"), metricsClient.getMatchingSubscribers("metrics/floor/1"));
+        metricsClient.getMatchingSubscribersStreaming("metrics/floor/2");
+        metricsClient.getSubscriptionCount();
+
+        final InMemorySubscriptionClientMetrics.EndpointMetrics add = metrics.get(Endpoint.ADD_SUBSCRIPTION);
+        assertEquals(3, add.getRequestCount());
+        assertEquals(3, add.getExchangeLatency().getCount());
+        assertEquals(2, add.getDecodeLatency().getCount());
+        assertEquals(1, add.getErrorStatusCodes().size());
+        assertFalse(add.getErrorStatusCodes().containsKey(200));
+        assertEquals(0, add.getFailureCount());
+        assertTrue(add.getBytesSent() > 0);
+
+        final InMemorySubscriptionClientMetrics.EndpointMetrics match = metrics.get(Endpoint.GET_MATCHING_SUBSCRIBERS);
+        assertEquals(2, match.getRequestCount());
+        assertEquals(2, match.getDecodeLatency().getCount());
+        assertEquals(Map.of(), match.getErrorStatusCodes());
+        assertTrue(match.getBytesReceived() >= 2 * "{\"subscribers\":[\"metrics1\"]}".length());
+
+        final InMemorySubscriptionClientMetrics.EndpointMetrics count = metrics.get(Endpoint.GET_SUBSCRIPTION_COUNT);
+        assertEquals(1, count.getRequestCount());
+        assertEquals(0, count.getBytesSent());
+        assertTrue(count.getBytesReceived() > 0);
+        assertEquals(0, metrics.get(Endpoint.ADD_SUBSCRIPTIONS_BATCH).getRequestCount());
+    }
+}
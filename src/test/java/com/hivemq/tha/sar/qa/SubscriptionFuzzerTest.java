@@ -0,0 +1,113 @@
+package com.hivemq.tha.sar.qa;
+
+import com.google.common.collect.ImmutableList;
+import com.hivemq.tha.sar.qa.subscription.CompactSubscriptionIndex;
+import com.hivemq.tha.sar.qa.subscription.FuzzResult;
+import com.hivemq.tha.sar.qa.subscription.InMemorySubscriptionStore;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionClient;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionFuzzer;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionServerPool;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionStore;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SubscriptionFuzzerTest {
+
+    @RegisterExtension
+    public static final @NotNull SubscriptionServerPool SERVERS = SubscriptionServerPool.newBuilder()
+            .setShellPath("/bin/bash")
+            .setJavaPath("/usr/bin/java")
+            .setThreadCount(2)
+            .setRequestTimeout(Duration.ofSeconds(10))
+            .setStartTimeout(Duration.ofSeconds(10))
+            .setSize(1)
+            .build();
+
+    /**
+     * Drops every client ID with a non-ASCII character, which the fuzzer should shrink to a single subscription.
+     */
+    private static class AsciiOnlyStore implements SubscriptionStore {
+
+        private final @NotNull InMemorySubscriptionStore delegate = new InMemorySubscriptionStore();
+
+        @Override
+        public void addSubscription(final @NotNull String topicFilter, final @NotNull String clientId) {
+            if (clientId.chars().allMatch(c -> c < 0x80)) {
+                delegate.addSubscription(topicFilter, clientId);
+            }
+        }
+
+        @Override
+        public @NotNull ImmutableList<@NotNull String> getMatchingSubscribers(final @NotNull String topic) {
+            return delegate.getMatchingSubscribers(topic);
+        }
+
+        @Override
+        public long getSubscriptionCount() {
+            return delegate.getSubscriptionCount();
+        }
+    }
+
+    @Test
+    public void inMemoryStoreAgreesWithReference(final @NotNull TestReporter testReporter) throws Exception {
+        final FuzzResult result = SubscriptionFuzzer.newBuilder()
+                .setCaseCount(2_000)
+                .setExoticRatio(0.3)
+                .build()
+                .run(new InMemorySubscriptionStore());
+        testReporter.publishEntry("fuzzResult", result.toString());
+        assertNull(result.getMismatch(), result::toString);
+        assertEquals(2_000, result.getCaseCount());
+    }
+
+    @Test
+    public void compactIndexAgreesWithReference(final @NotNull TestReporter testReporter) throws Exception {
+        final FuzzResult result = SubscriptionFuzzer.newBuilder()
+                .setSeed(7)
+                .setCaseCount(2_000)
+                .setExoticRatio(0.3)
+                .build()
+                .run(new CompactSubscriptionIndex());
+        testReporter.publishEntry("fuzzResult", result.toString());
+        assertNull(result.getMismatch(), result::toString);
+    }
+
+    @Test
+    public void mismatchIsShrunkToMinimalRepro() throws Exception {
+        final FuzzResult result = SubscriptionFuzzer.newBuilder()
+                .setExoticRatio(0.5)
+                .setSubscriptionsPerCase(20)
+                .build()
+                .run(new AsciiOnlyStore());
+        final FuzzResult.Mismatch mismatch = result.getMismatch();
+        assertNotNull(mismatch, result::toString);
+        assertEquals(1, mismatch.getSubscriptions().size(), mismatch::toString);
+        assertTrue(mismatch.getShrinkAttempts() > 0, mismatch::toString);
+        assertTrue(mismatch.getSubscriptions().get(0).getClientId().chars().anyMatch(c -> c >= 0x80),
+                mismatch::toString);
+    }
+
+    /**
+     * The server is known to disagree with MQTT matching for some wildcards and non-ASCII characters, so this only
+     * runs on request: {@code -Dfuzz.server=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "fuzz.server", matches = "true")
+    public void serverAgreesWithReference(
+            final @NotNull SubscriptionClient client, final @NotNull TestReporter testReporter) throws Exception {
+        final FuzzResult result = SubscriptionFuzzer.newBuilder()
+                .setSeed(Long.getLong("fuzz.seed", 42))
+                .setCaseCount(Integer.getInteger("fuzz.cases", 2_000))
+                .build()
+                .run(client);
+        testReporter.publishEntry("fuzzResult", result.toString());
+        assertNull(result.getMismatch(), result::toString);
+    }
+}
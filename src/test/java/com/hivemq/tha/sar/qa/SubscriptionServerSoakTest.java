@@ -0,0 +1,98 @@
+package com.hivemq.tha.sar.qa;
+
+import com.hivemq.tha.sar.qa.subscription.LoadGenerator;
+import com.hivemq.tha.sar.qa.subscription.ServerInstrumentation;
+import com.hivemq.tha.sar.qa.subscription.SoakResult;
+import com.hivemq.tha.sar.qa.subscription.SoakRunner;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionClient;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionServerExtension;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionServerPool;
+import com.hivemq.tha.sar.qa.subscription.TopicTreeGenerator;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Saturates a server with few threads and a short request timeout. The full soak runs for hours and only on request:
+ * {@code -Dsoak=true}, optionally with {@code soak.duration}, {@code soak.window} (ISO-8601), {@code soak.threadCount},
+ * {@code soak.concurrency}, {@code soak.subscriptionCount} and {@code soak.requestTimeout} (ISO-8601).
+ */
+public class SubscriptionServerSoakTest {
+
+    private static final int THREAD_COUNT = Integer.getInteger("soak.threadCount", 1);
+
+    @RegisterExtension
+    public static final @NotNull SubscriptionServerPool SERVERS = SubscriptionServerPool.newBuilder()
+            .setShellPath("/bin/bash")
+            .setJavaPath("/usr/bin/java")
+            .setThreadCount(THREAD_COUNT)
+            .setRequestTimeout(Duration.parse(System.getProperty("soak.requestTimeout", "PT1S")))
+            .setStartTimeout(Duration.ofSeconds(20))
+            .setSize(1)
+            .setInstrumentation(ServerInstrumentation.newBuilder().build())
+            .build();
+
+    @Test
+    public void shortSoakReportsEveryWindow(
+            final @NotNull SubscriptionServerExtension server,
+            final @NotNull SubscriptionClient client,
+            final @NotNull TestReporter testReporter) throws Exception {
+        final SoakResult result =
+                newSoakRunner(server, client, 1000, Duration.ofSeconds(3), Duration.ofSeconds(1)).run();
+        testReporter.publishEntry("soakResult", result.toString());
+        assertEquals(3, result.getWindows().size(), result::toString);
+        assertEquals(1000, result.getPreloadedSubscriptionCount(), result::toString);
+        // A cold server may not complete any request within the first window, so only the total is checked.
+        assertTrue(result.getWindows().stream().mapToLong(SoakResult.Window::getRequestCount).sum() > 0,
+                result::toString);
+        for (final SoakResult.Window window : result.getWindows()) {
+            assertNotNull(window.getResources(), result::toString);
+            assertTrue(window.getEndRssBytes() > 0, result::toString);
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "soak", matches = "true")
+    public void serverDoesNotDegradeUnderSustainedSaturation(
+            final @NotNull SubscriptionServerExtension server, final @NotNull SubscriptionClient client)
+            throws Exception {
+        final Duration duration = Duration.parse(System.getProperty("soak.duration", "PT2H"));
+        final Duration window = Duration.parse(System.getProperty("soak.window", "PT1M"));
+        final int subscriptionCount = Integer.getInteger("soak.subscriptionCount", 10_000);
+        final SoakResult result =
+                newSoakRunner(server, client, subscriptionCount, duration, window).run(System.out::println);
+        final Path output = Paths.get("target", "soak-result.json");
+        Files.createDirectories(output.getParent());
+        Files.write(output, result.toJson().toString(2).getBytes(StandardCharsets.UTF_8));
+        assertTrue(result.getViolations().isEmpty(), result.getViolations()::toString);
+    }
+
+    private static @NotNull SoakRunner newSoakRunner(
+            final @NotNull SubscriptionServerExtension server,
+            final @NotNull SubscriptionClient client,
+            final int subscriptionCount,
+            final @NotNull Duration duration,
+            final @NotNull Duration window) {
+        return SoakRunner.newBuilder()
+                .setClient(client)
+                .setServer(server)
+                .setTopicTreeGenerator(new TopicTreeGenerator(42, 4, 10, 0.1))
+                .setSubscriptionCount(subscriptionCount)
+                .setDuration(duration)
+                .setWindowDuration(window)
+                .setConcurrency(Integer.getInteger("soak.concurrency", THREAD_COUNT * 8))
+                .setWeight(LoadGenerator.Operation.GET_MATCHING_SUBSCRIBERS, 8)
+                .setWeight(LoadGenerator.Operation.GET_SUBSCRIPTION_COUNT, 1)
+                .build();
+    }
+}
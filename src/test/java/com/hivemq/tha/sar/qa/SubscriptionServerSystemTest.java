@@ -2,10 +2,13 @@ package com.hivemq.tha.sar.qa;
 
 import com.hivemq.tha.sar.qa.subscription.SubscriptionClient;
 import com.hivemq.tha.sar.qa.subscription.SubscriptionServerExtension;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionServerPool;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -27,23 +30,23 @@ import static org.mockito.ArgumentMatchers.contains;
 public class SubscriptionServerSystemTest {
 
     @RegisterExtension
-    public static final @NotNull SubscriptionServerExtension SERVER = SubscriptionServerExtension.newBuilder()
+    public static final @NotNull SubscriptionServerPool SERVERS = SubscriptionServerPool.newBuilder()
             .setShellPath("/bin/bash")
             .setJavaPath("/usr/bin/java")
-            .setPort(44399)
             .setThreadCount(2)
             .setRequestTimeout(Duration.ofSeconds(10))
-            .setWaitAfterStart(Duration.ofSeconds(1))
+            .setStartTimeout(Duration.ofSeconds(10))
             .build();
 
     private @NotNull SubscriptionClient client;
 
     @BeforeEach
-    public void setUp() throws URISyntaxException {
-        client = new SubscriptionClient(SERVER.getPort(), SERVER.getRequestTimeout());
+    public void setUp(final @NotNull SubscriptionServerExtension server) throws URISyntaxException {
+        client = new SubscriptionClient(server.getPort(), server.getRequestTimeout());
     }
 
     @Test
+    @Execution(ExecutionMode.CONCURRENT)
     public void tc01_positiveAddSubscriptionAndVerifyCountAndMatchingSubscribers() throws IOException, InterruptedException {
         client.addSubscription("building/floor/firstfloor/105", "firstFloor");
         assertEquals(1, client.getSubscriptionCount());
@@ -51,6 +54,7 @@ public class SubscriptionServerSystemTest {
     }
 
     @Test
+    @Execution(ExecutionMode.CONCURRENT)
     public void tc02_positiveSingleClientMultipleTopicsVerifyCountAndMatchingSubscriptions() throws IOException, InterruptedException {
         client.addSubscription("building/floor/firstfloor/105", "firstFloor");
         client.addSubscription("building/floor/firstfloor/106", "firstFloor");
@@ -64,6 +68,7 @@ public class SubscriptionServerSystemTest {
     }
 
     @Test
+    @Execution(ExecutionMode.CONCURRENT)
     public void tc03_positiveMultipleClientsMultipleTopicsVerifyCountAndSubscriptions() throws IOException, InterruptedException {
         client.addSubscription("building/floor/firstfloor/105", "firstFloor");
         client.addSubscription("building/floor/firstfloor/106", "firstFloor");
@@ -81,6 +86,7 @@ public class SubscriptionServerSystemTest {
     }
 
     @Test
+    @Execution(ExecutionMode.CONCURRENT)
     public void tc04_positiveWildcardSearchHashVerifyCountAndSubscriptions() throws IOException, InterruptedException {
         client.addSubscription("building/floor/firstfloor/105", "firstFloor");
         client.addSubscription("building/floor/firstfloor/106", "firstFloor");
@@ -96,6 +102,7 @@ public class SubscriptionServerSystemTest {
     }
 
     @Test
+    @Execution(ExecutionMode.CONCURRENT)
     public void tc05_positiveWildcardSearchPlusVerifyCountAndSubscriptions() throws IOException, InterruptedException {
         client.addSubscription("building/floor/firstfloor/floors", "firstFloor");
         client.addSubscription("building/floor/secondfloor/floors", "secondFloor");
@@ -109,6 +116,7 @@ public class SubscriptionServerSystemTest {
     }
 
     @Test
+    @Execution(ExecutionMode.CONCURRENT)
     public void tc06_positiveWildcardSearchPlusAndHashVerifyCountAndSubscriptions() throws IOException, InterruptedException {
         client.addSubscription("building/floor/firstfloor/105", "firstFloor");
         client.addSubscription("building/floor/firstfloor/106", "firstFloor");
@@ -124,6 +132,7 @@ public class SubscriptionServerSystemTest {
     }
 
     @Test //TODO need to confirm the appropriate outcome when topic is empty
+    @Execution(ExecutionMode.CONCURRENT)
     public void tc07_emptyTopicLegalClient() throws IOException, InterruptedException {
         client.addSubscription("", "client");
         assertEquals(1, client.getSubscriptionCount());
@@ -133,6 +142,7 @@ public class SubscriptionServerSystemTest {
     }
 
     @Test //TODO need to confirm the appropriate outcome when client is empty
+    @Execution(ExecutionMode.CONCURRENT)
     public void tc08_legalTopicEmptyClient() throws IOException, InterruptedException {
         client.addSubscription("legalTopic", "");
         assertEquals(1, client.getSubscriptionCount());
@@ -142,6 +152,7 @@ public class SubscriptionServerSystemTest {
     }
 
     @Test
+    @Execution(ExecutionMode.CONCURRENT)
     public void tc09_nullTopicLegalClient() throws IOException, InterruptedException {
         Exception exception = assertThrows(IllegalArgumentException.class, () -> {
             client.addSubscription(null, "client");
@@ -153,6 +164,7 @@ public class SubscriptionServerSystemTest {
     }
 
     @Test
+    @Execution(ExecutionMode.CONCURRENT)
     public void tc10_legalTopicNullClient() throws IOException, InterruptedException {
         Exception exception = assertThrows(IllegalArgumentException.class, () -> {
             client.addSubscription("legalTopic", null);
@@ -164,6 +176,7 @@ public class SubscriptionServerSystemTest {
     }
 
     @Test
+    @Execution(ExecutionMode.CONCURRENT)
     public void tc11_spacesInBetween() throws IOException, InterruptedException {
         client.addSubscription("space in topic", "legalClient");
         assertEquals(1, client.getSubscriptionCount());
@@ -173,6 +186,7 @@ public class SubscriptionServerSystemTest {
     }
 
     @Test
+    @Execution(ExecutionMode.CONCURRENT)
     public void tc12_leadingSpaceInTopic() throws IOException, InterruptedException {
         client.addSubscription(" leadingSpaceInTopic", "legalClient");
         assertEquals(1, client.getSubscriptionCount());
@@ -182,6 +196,7 @@ public class SubscriptionServerSystemTest {
     }
 
     @Test
+    @Execution(ExecutionMode.CONCURRENT)
     public void tc13_trailingSpaceInTopic() throws IOException, InterruptedException {
         client.addSubscription("trailingSpaceInTopic ", "legalClient");
         assertEquals(1, client.getSubscriptionCount());
@@ -191,6 +206,7 @@ public class SubscriptionServerSystemTest {
     }
 
     @Test
+    @Execution(ExecutionMode.CONCURRENT)
     public void tc14_rootSubscription() throws IOException, InterruptedException {
         client.addSubscription("topic1 ", "legalClient");
         client.addSubscription("topic2 ", "legalClient");
@@ -203,6 +219,7 @@ public class SubscriptionServerSystemTest {
     }
 
     @ParameterizedTest
+    @Execution(ExecutionMode.CONCURRENT)
     @MethodSource("decimalToASCIIProblemChars")
     public void tc15_asciiProblemCharactersTests(char problemChar) throws IOException, InterruptedException {
         String topic = "prefixString" + String.valueOf(problemChar) + "suffixString";
@@ -226,6 +243,7 @@ public class SubscriptionServerSystemTest {
 
 
     @Test
+    @Execution(ExecutionMode.CONCURRENT)
     public void tc17_sameTopicMultipleSubscriptions() throws IOException, InterruptedException {
         client.addSubscription("topic1", "legalClient");
         client.addSubscription("topic1", "legalClient");
@@ -236,6 +254,7 @@ public class SubscriptionServerSystemTest {
     }
 
     @Test
+    @Execution(ExecutionMode.CONCURRENT)
     public void tc18_caseSensitiveSearch() throws IOException, InterruptedException {
         client.addSubscription("topics/CaseSensitive", "legalClient");
         client.addSubscription("topics/CASESENSITIVE", "legalClient1");
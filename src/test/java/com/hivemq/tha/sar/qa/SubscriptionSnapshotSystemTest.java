@@ -0,0 +1,83 @@
+package com.hivemq.tha.sar.qa;
+
+import com.hivemq.tha.sar.qa.subscription.InMemorySubscriptionStore;
+import com.hivemq.tha.sar.qa.subscription.SnapshotReplayResult;
+import com.hivemq.tha.sar.qa.subscription.Subscription;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionClient;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionServerPool;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionSnapshot;
+import com.hivemq.tha.sar.qa.subscription.TopicTreeGenerator;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SubscriptionSnapshotSystemTest {
+
+    @RegisterExtension
+    public static final @NotNull SubscriptionServerPool SERVERS = SubscriptionServerPool.newBuilder()
+            .setShellPath("/bin/bash")
+            .setJavaPath("/usr/bin/java")
+            .setThreadCount(2)
+            .setRequestTimeout(Duration.ofSeconds(10))
+            .setStartTimeout(Duration.ofSeconds(10))
+            .setSize(1)
+            .build();
+
+    @TempDir
+    public Path tempDir;
+
+    @Test
+    public void snapshotRoundTripsEverySubscription() throws Exception {
+        final InMemorySubscriptionStore store = new InMemorySubscriptionStore();
+        final Set<Subscription> expected = new HashSet<>();
+        for (final Subscription subscription : new TopicTreeGenerator(42, 5, 10, 0.2).nextSubscriptions(50_000, 500)) {
+            store.addSubscription(subscription.getTopicFilter(), subscription.getClientId());
+            expected.add(subscription);
+        }
+        for (final Subscription subscription : new Subscription[]{
+                new Subscription("building//\u00e9tage/+", "client\u00e9"),
+                new Subscription("#", "\ud83d\ude00"),
+                new Subscription("$SYS/broker", "client0")}) {
+            store.addSubscription(subscription.getTopicFilter(), subscription.getClientId());
+            expected.add(subscription);
+        }
+
+        final Path file = tempDir.resolve("subscriptions.snapshot");
+        assertEquals(expected.size(), SubscriptionSnapshot.write(file, store));
+        final SubscriptionSnapshot snapshot = SubscriptionSnapshot.open(file);
+        assertEquals(expected.size(), snapshot.getSubscriptionCount());
+        assertEquals(store.getSubscriptionCount(), snapshot.getClientCount());
+        final Set<Subscription> actual = new HashSet<>();
+        snapshot.forEach(actual::add);
+        assertEquals(expected, actual);
+        // Each subscription takes one byte per level and two bytes for its client, plus the dictionaries.
+        assertTrue(Files.size(file) < expected.size() * 8L, () -> "Snapshot size: " + file.toFile().length());
+    }
+
+    @Test
+    public void replayRestoresAFreshServer(
+            final @NotNull SubscriptionClient client, final @NotNull TestReporter testReporter) throws Exception {
+        final InMemorySubscriptionStore store = new InMemorySubscriptionStore();
+        for (final Subscription subscription : new TopicTreeGenerator(7, 4, 10, 0.2).nextSubscriptions(5_000, 500)) {
+            store.addSubscription(subscription.getTopicFilter(), subscription.getClientId());
+        }
+        final Path file = tempDir.resolve("subscriptions.snapshot");
+        SubscriptionSnapshot.write(file, store);
+
+        final SnapshotReplayResult result = SubscriptionSnapshot.open(file).replay(client, 1_000, 100);
+        testReporter.publishEntry("replayResult", result.toString());
+        assertTrue(result.isVerified(), result::toString);
+        assertEquals(100, result.getSampleCount());
+        assertEquals(store.getSubscriptionCount(), result.getActualServerCount());
+    }
+}
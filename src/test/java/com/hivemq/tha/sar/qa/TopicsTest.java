@@ -0,0 +1,32 @@
+package com.hivemq.tha.sar.qa;
+
+import com.hivemq.tha.sar.qa.subscription.Topics;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TopicsTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "a/b/c, a/b/c, true",
+            "a/b/c, a/b/d, false",
+            "a/+/c, a/b/c, true",
+            "a/+, a/b/c, false",
+            "+/+, /a, true",
+            "a/#, a, true",
+            "a/#, a/b/c, true",
+            "#, a/b, true",
+            "a/#/c, a/b/c, false",
+            "#, $SYS/a, false",
+            "+/a, $SYS/a, false",
+            "$SYS/#, $SYS/a, true",
+            "a, a/, false",
+            "a/+, a/, true",
+            "A, a, false",
+    })
+    public void matchesFollowsMqttSemantics(final String topicFilter, final String topic, final boolean matches) {
+        assertEquals(matches, Topics.matches(topicFilter, topic));
+    }
+}
@@ -0,0 +1,113 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+
+public class BulkAddResult {
+
+    public static class ChunkReport {
+
+        private final int index;
+        private final int size;
+        private final boolean batched;
+        private final @NotNull Duration duration;
+        private final @NotNull ImmutableList<@NotNull Subscription> failedSubscriptions;
+
+        ChunkReport(
+                final int index,
+                final int size,
+                final boolean batched,
+                final @NotNull Duration duration,
+                final @NotNull ImmutableList<@NotNull Subscription> failedSubscriptions) {
+            this.index = index;
+            this.size = size;
+            this.batched = batched;
+            this.duration = duration;
+            this.failedSubscriptions = failedSubscriptions;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public boolean isBatched() {
+            return batched;
+        }
+
+        public @NotNull Duration getDuration() {
+            return duration;
+        }
+
+        public @NotNull ImmutableList<@NotNull Subscription> getFailedSubscriptions() {
+            return failedSubscriptions;
+        }
+
+        public double getSubscriptionsPerSecond() {
+            return perSecond(size, duration);
+        }
+
+        @Override
+        public @NotNull String toString() {
+            return String.format(
+                    "ChunkReport{index=%d, size=%d, batched=%b, duration=%s, failures=%d, rate=%.1f/s}",
+                    index,
+                    size,
+                    batched,
+                    duration,
+                    failedSubscriptions.size(),
+                    getSubscriptionsPerSecond());
+        }
+    }
+
+    private final @NotNull ImmutableList<@NotNull ChunkReport> chunks;
+    private final @NotNull Duration duration;
+
+    BulkAddResult(final @NotNull ImmutableList<@NotNull ChunkReport> chunks, final @NotNull Duration duration) {
+        this.chunks = chunks;
+        this.duration = duration;
+    }
+
+    public @NotNull ImmutableList<@NotNull ChunkReport> getChunks() {
+        return chunks;
+    }
+
+    public @NotNull Duration getDuration() {
+        return duration;
+    }
+
+    public long getSubscriptionCount() {
+        return chunks.stream().mapToLong(ChunkReport::getSize).sum();
+    }
+
+    public @NotNull ImmutableList<@NotNull Subscription> getFailedSubscriptions() {
+        final ImmutableList.Builder<Subscription> failedSubscriptions = ImmutableList.builder();
+        chunks.forEach(chunk -> failedSubscriptions.addAll(chunk.getFailedSubscriptions()));
+        return failedSubscriptions.build();
+    }
+
+    public double getSubscriptionsPerSecond() {
+        return perSecond(getSubscriptionCount(), duration);
+    }
+
+    private static double perSecond(final long count, final @NotNull Duration duration) {
+        final long nanos = duration.toNanos();
+        return nanos == 0 ? 0 : count * 1_000_000_000.0 / nanos;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return String.format(
+                "BulkAddResult{subscriptions=%d, chunks=%d, duration=%s, failures=%d, rate=%.1f/s}",
+                getSubscriptionCount(),
+                chunks.size(),
+                duration,
+                getFailedSubscriptions().size(),
+                getSubscriptionsPerSecond());
+    }
+}
@@ -0,0 +1,179 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+
+/**
+ * Fails requests fast while the server is saturated, instead of adding to its queue. The breaker opens after a
+ * number of consecutive failures: requests without a response, such as timeouts and refused connections, and the
+ * status codes a saturated server answers with. Any other response, including other error status codes, shows that
+ * the server keeps up and resets the count. While open, requests are rejected without being sent. After the open
+ * duration a single probe request is let through: its success closes the breaker, and its failure opens it again.
+ * <p>
+ * Each permitted request carries the generation of the state it was permitted in, and the generation changes with
+ * every state change. Outcomes of requests permitted before the last state change are ignored, so a request that was
+ * sent before the breaker opened and completes late neither closes it nor opens it again. Only the probe's outcome
+ * moves the breaker out of the half-open state.
+ */
+public class CircuitBreaker {
+
+    private static final int STATUS_REQUEST_TIMEOUT = 408;
+    private static final int STATUS_TOO_MANY_REQUESTS = 429;
+    private static final int STATUS_SERVICE_UNAVAILABLE = 503;
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    public static class Builder {
+
+        private int failureThreshold = 5;
+        private @NotNull Duration openDuration = Duration.ofSeconds(1);
+
+        private Builder() {
+        }
+
+        public @NotNull Builder setFailureThreshold(final int failureThreshold) {
+            this.failureThreshold = failureThreshold;
+            return this;
+        }
+
+        public @NotNull Builder setOpenDuration(final @NotNull Duration openDuration) {
+            this.openDuration = openDuration;
+            return this;
+        }
+
+        public @NotNull CircuitBreaker build() {
+            return new CircuitBreaker(failureThreshold, openDuration);
+        }
+    }
+
+    public static @NotNull Builder newBuilder() {
+        return new Builder();
+    }
+
+    static final class Permit {
+
+        private final long generation;
+        private final boolean probe;
+
+        private Permit(final long generation, final boolean probe) {
+            this.generation = generation;
+            this.probe = probe;
+        }
+    }
+
+    static boolean isOverloadStatusCode(final int statusCode) {
+        return statusCode == STATUS_REQUEST_TIMEOUT ||
+                statusCode == STATUS_TOO_MANY_REQUESTS ||
+                statusCode == STATUS_SERVICE_UNAVAILABLE;
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private @NotNull State state = State.CLOSED;
+    private long generation;
+    private int consecutiveFailures;
+    private long openedNanoTime;
+    private boolean probeInFlight;
+    private long openCount;
+    private long rejectedCount;
+
+    private CircuitBreaker(final int failureThreshold, final @NotNull Duration openDuration) {
+        assert failureThreshold > 0 : "Failure threshold must be > 0: " + failureThreshold;
+        assert !openDuration.isNegative() : "Open duration must be >= 0: " + openDuration;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    /**
+     * Returns the permit to send a request, or {@code null} if the request is rejected. The outcome of every
+     * permitted request must be reported through {@link #onSuccess(Permit)} or {@link #onFailure(Permit)}, or
+     * {@link #release(Permit)} if it could not be sent.
+     */
+    synchronized @Nullable Permit tryAcquire() {
+        if (state == State.OPEN && System.nanoTime() - openedNanoTime >= openNanos) {
+            setState(State.HALF_OPEN);
+        }
+        if (state == State.CLOSED) {
+            return new Permit(generation, false);
+        }
+        if (state == State.HALF_OPEN && !probeInFlight) {
+            probeInFlight = true;
+            return new Permit(generation, true);
+        }
+        rejectedCount++;
+        return null;
+    }
+
+    /**
+     * Reports that a permitted request was not sent after all, so it neither closes nor opens the breaker, and
+     * another probe may be sent if it was the probe.
+     */
+    synchronized void release(final @NotNull Permit permit) {
+        if (isCurrentProbe(permit)) {
+            probeInFlight = false;
+        }
+    }
+
+    synchronized void onSuccess(final @NotNull Permit permit) {
+        if (permit.generation != generation) {
+            return;
+        }
+        if (state == State.CLOSED) {
+            consecutiveFailures = 0;
+        } else if (isCurrentProbe(permit)) {
+            setState(State.CLOSED);
+        }
+    }
+
+    /**
+     * Returns whether the failure opened the breaker.
+     */
+    synchronized boolean onFailure(final @NotNull Permit permit) {
+        if (permit.generation != generation) {
+            return false;
+        }
+        if ((state == State.CLOSED && ++consecutiveFailures >= failureThreshold) || isCurrentProbe(permit)) {
+            setState(State.OPEN);
+            openedNanoTime = System.nanoTime();
+            openCount++;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized @NotNull State getState() {
+        return state;
+    }
+
+    /**
+     * The number of times the breaker opened.
+     */
+    public synchronized long getOpenCount() {
+        return openCount;
+    }
+
+    /**
+     * The number of requests rejected without being sent.
+     */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    private boolean isCurrentProbe(final @NotNull Permit permit) {
+        return permit.probe && permit.generation == generation && state == State.HALF_OPEN;
+    }
+
+    private void setState(final @NotNull State state) {
+        this.state = state;
+        generation++;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+}
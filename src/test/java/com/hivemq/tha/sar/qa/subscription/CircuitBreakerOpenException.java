@@ -0,0 +1,15 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending a request while the {@link CircuitBreaker} of the client is open.
+ */
+public class CircuitBreakerOpenException extends IOException {
+
+    CircuitBreakerOpenException(final @NotNull SubscriptionClientMetrics.Endpoint endpoint) {
+        super("Circuit breaker is open, " + endpoint + " request was not sent");
+    }
+}
@@ -0,0 +1,102 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Set of non-negative ints that switches representation like a roaring bitmap container: a sorted int array while
+ * sparse, a bitmap once its ints take more memory than a bitmap covering the same range, both with their object
+ * overhead. Not thread-safe.
+ */
+class CompactIntSet {
+
+    private static final int INITIAL_CAPACITY = 2;
+    /**
+     * Estimated for compressed oops: the header and length of an array, and a {@code BitSet} with its fields.
+     */
+    private static final long ARRAY_OVERHEAD_BYTES = 16;
+    private static final long BIT_SET_OVERHEAD_BYTES = 24 + ARRAY_OVERHEAD_BYTES;
+
+    private int @Nullable [] values = new int[INITIAL_CAPACITY];
+    private int size;
+    private @Nullable BitSet bitmap;
+
+    boolean add(final int value) {
+        assert value >= 0 : "Value must be >= 0: " + value;
+        if (bitmap != null) {
+            if (bitmap.get(value)) {
+                return false;
+            }
+            bitmap.set(value);
+            size++;
+            return true;
+        }
+        assert values != null;
+        final int index = Arrays.binarySearch(values, 0, size, value);
+        if (index >= 0) {
+            return false;
+        }
+        final int insertionPoint = -index - 1;
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        System.arraycopy(values, insertionPoint, values, insertionPoint + 1, size - insertionPoint);
+        values[insertionPoint] = value;
+        size++;
+        if (arrayIsLargerThanBitmap()) {
+            convertToBitmap();
+        }
+        return true;
+    }
+
+    boolean contains(final int value) {
+        if (bitmap != null) {
+            return bitmap.get(value);
+        }
+        assert values != null;
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void orInto(final @NotNull BitSet target) {
+        if (bitmap != null) {
+            target.or(bitmap);
+            return;
+        }
+        assert values != null;
+        for (int i = 0; i < size; i++) {
+            target.set(values[i]);
+        }
+    }
+
+    boolean isBitmap() {
+        return bitmap != null;
+    }
+
+    /**
+     * Compares the ints in use with the words a bitmap up to the largest value needs, each with its overhead.
+     */
+    private boolean arrayIsLargerThanBitmap() {
+        assert values != null;
+        final long arrayBytes = ARRAY_OVERHEAD_BYTES + (long) size * Integer.BYTES;
+        final long bitmapWords = (values[size - 1] >>> 6) + 1L;
+        final long bitmapBytes = BIT_SET_OVERHEAD_BYTES + bitmapWords * Long.BYTES;
+        return arrayBytes > bitmapBytes;
+    }
+
+    private void convertToBitmap() {
+        assert values != null;
+        final BitSet converted = new BitSet(values[size - 1] + 1);
+        for (int i = 0; i < size; i++) {
+            converted.set(values[i]);
+        }
+        bitmap = converted;
+        values = null;
+    }
+}
@@ -0,0 +1,139 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Memory-compact counterpart of {@link InMemorySubscriptionStore}. Client IDs are interned into a dense int
+ * dictionary, each trie node keeps its subscribers as a {@link CompactIntSet}, and a match ORs the sets of all
+ * matching nodes into one bitmap before turning the ids back into strings. Matches share a read lock, adds take
+ * the write lock.
+ * <p>
+ * Matching clients are returned once each, in the order in which the clients first subscribed.
+ */
+public class CompactSubscriptionIndex implements SubscriptionStore {
+
+    private static class Node {
+
+        private @Nullable Map<String, Node> children;
+        private @Nullable CompactIntSet subscribers;
+
+        @Nullable Node child(final @NotNull String level) {
+            return children == null ? null : children.get(level);
+        }
+    }
+
+    private final @NotNull Node root = new Node();
+    private final @NotNull Map<String, String> levelTokens = new HashMap<>();
+    private final @NotNull Map<String, Integer> clientIds = new HashMap<>();
+    private final @NotNull List<String> clientIdsByIndex = new ArrayList<>();
+    private final @NotNull ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Override
+    public void addSubscription(final @NotNull String topicFilter, final @NotNull String clientId) {
+        lock.writeLock().lock();
+        try {
+            final int clientIndex = clientIds.computeIfAbsent(clientId, id -> {
+                clientIdsByIndex.add(id);
+                return clientIdsByIndex.size() - 1;
+            });
+            Node node = root;
+            for (final String level : Topics.split(topicFilter)) {
+                if (node.children == null) {
+                    node.children = new HashMap<>(4);
+                }
+                node = node.children.computeIfAbsent(
+                        levelTokens.computeIfAbsent(level, token -> token), token -> new Node());
+            }
+            if (node.subscribers == null) {
+                node.subscribers = new CompactIntSet();
+            }
+            node.subscribers.add(clientIndex);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public @NotNull ImmutableList<@NotNull String> getMatchingSubscribers(final @NotNull String topic) {
+        final String[] levels = Topics.split(topic);
+        final boolean systemTopic = !levels[0].isEmpty() && levels[0].charAt(0) == '$';
+        final BitSet matches = new BitSet();
+        lock.readLock().lock();
+        try {
+            collect(root, levels, 0, !systemTopic, matches);
+            final ImmutableList.Builder<String> subscribers =
+                    ImmutableList.builderWithExpectedSize(matches.cardinality());
+            for (int index = matches.nextSetBit(0); index >= 0; index = matches.nextSetBit(index + 1)) {
+                subscribers.add(clientIdsByIndex.get(index));
+            }
+            return subscribers.build();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long getSubscriptionCount() {
+        lock.readLock().lock();
+        try {
+            return clientIdsByIndex.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns whether the subscribers of the topic filter are stored as a bitmap instead of a sorted array.
+     */
+    public boolean isStoredAsBitmap(final @NotNull String topicFilter) {
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (final String level : Topics.split(topicFilter)) {
+                node = node.child(level);
+                if (node == null) {
+                    return false;
+                }
+            }
+            return node.subscribers != null && node.subscribers.isBitmap();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void collect(
+            final @NotNull Node node,
+            final @NotNull String @NotNull [] levels,
+            final int index,
+            final boolean wildcardsAllowed,
+            final @NotNull BitSet matches) {
+        final Node multiLevel = wildcardsAllowed ? node.child(Topics.MULTI_LEVEL_WILDCARD) : null;
+        if (multiLevel != null && multiLevel.subscribers != null) {
+            multiLevel.subscribers.orInto(matches);
+        }
+        if (index == levels.length) {
+            if (node.subscribers != null) {
+                node.subscribers.orInto(matches);
+            }
+            return;
+        }
+        final Node exact = node.child(levels[index]);
+        if (exact != null) {
+            collect(exact, levels, index + 1, true, matches);
+        }
+        final Node singleLevel = wildcardsAllowed ? node.child(Topics.SINGLE_LEVEL_WILDCARD) : null;
+        if (singleLevel != null && singleLevel != exact) {
+            collect(singleLevel, levels, index + 1, true, matches);
+        }
+    }
+}
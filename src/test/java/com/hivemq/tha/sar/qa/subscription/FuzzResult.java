@@ -0,0 +1,181 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+
+public class FuzzResult {
+
+    public static class Mismatch {
+
+        public enum Kind {
+            /**
+             * The matching subscribers of a topic differ from the reference matcher.
+             */
+            MATCH,
+            /**
+             * The subscription count differs from the number of distinct subscribed clients.
+             */
+            COUNT,
+            /**
+             * A valid request failed.
+             */
+            ERROR
+        }
+
+        private final @NotNull Kind kind;
+        private final @NotNull ImmutableList<@NotNull Subscription> subscriptions;
+        private final @Nullable String topic;
+        private final @NotNull String expected;
+        private final @NotNull String actual;
+        private final int shrinkAttempts;
+
+        Mismatch(
+                final @NotNull Kind kind,
+                final @NotNull ImmutableList<@NotNull Subscription> subscriptions,
+                final @Nullable String topic,
+                final @NotNull String expected,
+                final @NotNull String actual,
+                final int shrinkAttempts) {
+            this.kind = kind;
+            this.subscriptions = subscriptions;
+            this.topic = topic;
+            this.expected = expected;
+            this.actual = actual;
+            this.shrinkAttempts = shrinkAttempts;
+        }
+
+        public @NotNull Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * The subscriptions that reproduce the mismatch when added to an otherwise unused namespace of the store.
+         */
+        public @NotNull ImmutableList<@NotNull Subscription> getSubscriptions() {
+            return subscriptions;
+        }
+
+        /**
+         * The matched topic, or {@code null} if the mismatch is not about a match.
+         */
+        public @Nullable String getTopic() {
+            return topic;
+        }
+
+        public @NotNull String getExpected() {
+            return expected;
+        }
+
+        public @NotNull String getActual() {
+            return actual;
+        }
+
+        public int getShrinkAttempts() {
+            return shrinkAttempts;
+        }
+
+        @Override
+        public @NotNull String toString() {
+            final StringBuilder builder = new StringBuilder("Mismatch{kind=").append(kind).append('\n');
+            for (final Subscription subscription : subscriptions) {
+                builder.append("  addSubscription(")
+                        .append(escape(subscription.getTopicFilter()))
+                        .append(", ")
+                        .append(escape(subscription.getClientId()))
+                        .append(")\n");
+            }
+            if (topic != null) {
+                builder.append("  getMatchingSubscribers(").append(escape(topic)).append(")\n");
+            }
+            return builder.append("  expected: ")
+                    .append(expected)
+                    .append("\n  actual:   ")
+                    .append(actual)
+                    .append("\n  shrinkAttempts=")
+                    .append(shrinkAttempts)
+                    .append('}')
+                    .toString();
+        }
+
+        /**
+         * Renders a string as a Java string literal, so control and non-ASCII characters survive copying the repro.
+         */
+        static @NotNull String escape(final @NotNull String value) {
+            final StringBuilder builder = new StringBuilder("\"");
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    builder.append('\\').append(c);
+                } else if (c >= 0x20 && c < 0x7F) {
+                    builder.append(c);
+                } else {
+                    builder.append(String.format("\\u%04x", (int) c));
+                }
+            }
+            return builder.append('"').toString();
+        }
+    }
+
+    private final int caseCount;
+    private final long subscriptionCount;
+    private final long queryCount;
+    private final @NotNull Duration duration;
+    private final @Nullable Mismatch mismatch;
+
+    FuzzResult(
+            final int caseCount,
+            final long subscriptionCount,
+            final long queryCount,
+            final @NotNull Duration duration,
+            final @Nullable Mismatch mismatch) {
+        this.caseCount = caseCount;
+        this.subscriptionCount = subscriptionCount;
+        this.queryCount = queryCount;
+        this.duration = duration;
+        this.mismatch = mismatch;
+    }
+
+    public int getCaseCount() {
+        return caseCount;
+    }
+
+    public long getSubscriptionCount() {
+        return subscriptionCount;
+    }
+
+    public long getQueryCount() {
+        return queryCount;
+    }
+
+    public @NotNull Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * The first mismatch, shrunk to a minimal repro, or {@code null} if the store agreed with the reference matcher
+     * in every case.
+     */
+    public @Nullable Mismatch getMismatch() {
+        return mismatch;
+    }
+
+    public double getCasesPerSecond() {
+        final long nanos = duration.toNanos();
+        return nanos == 0 ? 0 : caseCount * 1_000_000_000.0 / nanos;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return String.format(
+                "FuzzResult{cases=%d, subscriptions=%d, queries=%d, duration=%s, rate=%.1f cases/s, mismatch=%s}",
+                caseCount,
+                subscriptionCount,
+                queryCount,
+                duration,
+                getCasesPerSecond(),
+                mismatch);
+    }
+}
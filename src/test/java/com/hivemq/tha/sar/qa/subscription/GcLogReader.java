@@ -0,0 +1,94 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Follows the GC log that {@link ServerInstrumentation} makes the server write, and keeps the heap occupancy after
+ * each collection. Only the summary lines of the {@code gc} tag are parsed, for example
+ * {@code [...][12.345s][info][gc          ] GC(3) Pause Young (Normal) (G1 Evacuation Pause) 24M->5M(256M) 3.4ms}.
+ * The uptime is mapped to {@link System#nanoTime()} from the time the process was started, so the samples are late
+ * by the JVM's startup time at most.
+ */
+class GcLogReader {
+
+    private static final @NotNull Pattern SUMMARY_LINE =
+            Pattern.compile("^\\[[^]]*]\\[(\\d+[.,]\\d+)s]\\[info\\s*]\\[gc\\s*] GC\\(\\d+\\) .*->(\\d+)([KMG])\\(");
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final @NotNull Path file;
+    private final long processStartNanoTime;
+    private final @NotNull List<ResourceReport.HeapSample> samples = new ArrayList<>();
+    private long position;
+
+    GcLogReader(final @NotNull Path file, final long processStartNanoTime) {
+        this.file = file;
+        this.processStartNanoTime = processStartNanoTime;
+    }
+
+    /**
+     * Parses the lines the JVM completed since the last call, so hours-long runs do not read the whole log again.
+     */
+    synchronized @NotNull ImmutableList<ResourceReport.@NotNull HeapSample> read() {
+        final byte[] appended;
+        try (final SeekableByteChannel channel = Files.newByteChannel(file)) {
+            final ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(0, channel.size() - position));
+            channel.position(position);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Reads until the size seen when opening the log, later lines are parsed by the next call.
+            }
+            appended = Arrays.copyOf(buffer.array(), buffer.position());
+        } catch (final NoSuchFileException e) {
+            return ImmutableList.of();
+        } catch (final IOException e) {
+            // The log is still written by the JVM, so an incomplete read is picked up by the next call.
+            return ImmutableList.copyOf(samples);
+        }
+        int lineStart = 0;
+        for (int i = 0; i < appended.length; i++) {
+            if (appended[i] == '\n') {
+                parse(new String(appended, lineStart, i - lineStart, StandardCharsets.UTF_8));
+                lineStart = i + 1;
+            }
+        }
+        position += lineStart;
+        return ImmutableList.copyOf(samples);
+    }
+
+    private void parse(final @NotNull String line) {
+        final Matcher matcher = SUMMARY_LINE.matcher(line);
+        if (!matcher.find()) {
+            return;
+        }
+        final double uptimeSeconds = Double.parseDouble(matcher.group(1).replace(',', '.'));
+        final long postGcHeapBytes = Long.parseLong(matcher.group(2)) * toBytes(matcher.group(3).charAt(0));
+        samples.add(new ResourceReport.HeapSample(
+                processStartNanoTime + (long) (uptimeSeconds * NANOS_PER_SECOND), postGcHeapBytes));
+    }
+
+    private static long toBytes(final char unit) {
+        switch (unit) {
+            case 'K':
+                return 1024L;
+            case 'M':
+                return 1024L * 1024;
+            case 'G':
+                return 1024L * 1024 * 1024;
+            default:
+                throw new IllegalArgumentException("Unknown unit: " + unit);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sends a second, hedged match request if the first one has not completed after a delay, and takes whichever
+ * response arrives first. The delay is a high percentile of recent match latencies, so only the slowest matches
+ * are hedged and the extra load stays small. Latencies are collected in windows of a fixed number of matches, and
+ * the delay is taken from the last full window, or from the first window until it is full. Until enough matches
+ * were measured, the maximum delay is used.
+ */
+public class HedgingPolicy {
+
+    private static final int MIN_SAMPLE_COUNT = 20;
+
+    public static class Builder {
+
+        private double percentile = 95;
+        private @NotNull Duration minDelay = Duration.ofMillis(1);
+        private @NotNull Duration maxDelay = Duration.ofSeconds(1);
+        private int windowSize = 1_000;
+
+        private Builder() {
+        }
+
+        public @NotNull Builder setPercentile(final double percentile) {
+            this.percentile = percentile;
+            return this;
+        }
+
+        public @NotNull Builder setMinDelay(final @NotNull Duration minDelay) {
+            this.minDelay = minDelay;
+            return this;
+        }
+
+        public @NotNull Builder setMaxDelay(final @NotNull Duration maxDelay) {
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        public @NotNull Builder setWindowSize(final int windowSize) {
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        public @NotNull HedgingPolicy build() {
+            return new HedgingPolicy(percentile, minDelay, maxDelay, windowSize);
+        }
+    }
+
+    public static @NotNull Builder newBuilder() {
+        return new Builder();
+    }
+
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final int windowSize;
+    private final @NotNull AtomicReference<LatencyHistogram> window = new AtomicReference<>(new LatencyHistogram());
+
+    private volatile @Nullable LatencyHistogram lastWindow;
+
+    private HedgingPolicy(
+            final double percentile,
+            final @NotNull Duration minDelay,
+            final @NotNull Duration maxDelay,
+            final int windowSize) {
+        assert percentile > 0 && percentile <= 100 : "Percentile must be in (0, 100]: " + percentile;
+        assert !minDelay.isNegative() : "Min delay must be >= 0: " + minDelay;
+        assert maxDelay.compareTo(minDelay) >= 0 : "Max delay must be >= min delay: " + maxDelay;
+        assert windowSize >= MIN_SAMPLE_COUNT : "Window size must be >= " + MIN_SAMPLE_COUNT + ": " + windowSize;
+        this.percentile = percentile;
+        this.minDelayNanos = minDelay.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.windowSize = windowSize;
+    }
+
+    public long getDelayNanos() {
+        final LatencyHistogram lastWindow = this.lastWindow;
+        final LatencyHistogram histogram = lastWindow != null ? lastWindow : window.get();
+        if (histogram.getCount() < MIN_SAMPLE_COUNT) {
+            return maxDelayNanos;
+        }
+        return Math.max(minDelayNanos, Math.min(maxDelayNanos, histogram.getValueAtPercentileNanos(percentile)));
+    }
+
+    /**
+     * Records the latency of a match from sending the first request until the first response.
+     */
+    void recordNanos(final long nanos) {
+        final LatencyHistogram histogram = window.get();
+        histogram.recordNanos(nanos);
+        if (histogram.getCount() >= windowSize && window.compareAndSet(histogram, new LatencyHistogram())) {
+            lastWindow = histogram;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * Thrown for a response with a status code other than 200. The message starts with the status code, followed by
+ * the response body.
+ */
+public class HttpStatusException extends IOException {
+
+    private final int statusCode;
+
+    HttpStatusException(final int statusCode, final @NotNull String body) {
+        super(statusCode + ": " + body);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
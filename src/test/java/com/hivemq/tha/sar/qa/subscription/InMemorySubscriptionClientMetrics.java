@@ -0,0 +1,224 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import com.google.common.collect.ImmutableMap;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates counters and latency histograms per endpoint. Recording is lock-free.
+ */
+public class InMemorySubscriptionClientMetrics implements SubscriptionClientMetrics {
+
+    public static class EndpointMetrics {
+
+        private final @NotNull LongAdder requests = new LongAdder();
+        private final @NotNull LongAdder failures = new LongAdder();
+        private final @NotNull LongAdder timeouts = new LongAdder();
+        private final @NotNull LongAdder bytesSent = new LongAdder();
+        private final @NotNull LongAdder bytesReceived = new LongAdder();
+        private final @NotNull LongAdder retries = new LongAdder();
+        private final @NotNull LongAdder hedges = new LongAdder();
+        private final @NotNull LongAdder hedgeWins = new LongAdder();
+        private final @NotNull LongAdder rejections = new LongAdder();
+        private final @NotNull Map<Integer, LongAdder> errorStatusCodes = new ConcurrentHashMap<>();
+        private final @NotNull LatencyHistogram encodeLatency = new LatencyHistogram();
+        private final @NotNull LatencyHistogram exchangeLatency = new LatencyHistogram();
+        private final @NotNull LatencyHistogram decodeLatency = new LatencyHistogram();
+
+        private EndpointMetrics() {
+        }
+
+        public long getRequestCount() {
+            return requests.sum();
+        }
+
+        /**
+         * Requests that received no response, including timeouts.
+         */
+        public long getFailureCount() {
+            return failures.sum();
+        }
+
+        public long getTimeoutCount() {
+            return timeouts.sum();
+        }
+
+        public long getBytesSent() {
+            return bytesSent.sum();
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived.sum();
+        }
+
+        public long getRetryCount() {
+            return retries.sum();
+        }
+
+        public long getHedgeCount() {
+            return hedges.sum();
+        }
+
+        public long getHedgeWinCount() {
+            return hedgeWins.sum();
+        }
+
+        /**
+         * Requests that were not sent because the circuit breaker was open.
+         */
+        public long getRejectionCount() {
+            return rejections.sum();
+        }
+
+        /**
+         * Counts the responses with a status code other than 200 by status code.
+         */
+        public @NotNull ImmutableMap<@NotNull Integer, @NotNull Long> getErrorStatusCodes() {
+            final ImmutableMap.Builder<Integer, Long> statusCodes = ImmutableMap.builder();
+            errorStatusCodes.forEach((statusCode, count) -> statusCodes.put(statusCode, count.sum()));
+            return statusCodes.build();
+        }
+
+        public @NotNull LatencyHistogram getEncodeLatency() {
+            return encodeLatency;
+        }
+
+        public @NotNull LatencyHistogram getExchangeLatency() {
+            return exchangeLatency;
+        }
+
+        public @NotNull LatencyHistogram getDecodeLatency() {
+            return decodeLatency;
+        }
+
+        @NotNull JSONObject toJson() {
+            final JSONObject json = new JSONObject();
+            json.put("requests", getRequestCount());
+            json.put("failures", getFailureCount());
+            json.put("timeouts", getTimeoutCount());
+            json.put("bytesSent", getBytesSent());
+            json.put("bytesReceived", getBytesReceived());
+            json.put("retries", getRetryCount());
+            json.put("hedges", getHedgeCount());
+            json.put("hedgeWins", getHedgeWinCount());
+            json.put("rejections", getRejectionCount());
+            final JSONObject jsonStatusCodes = new JSONObject();
+            getErrorStatusCodes().forEach((statusCode, count) -> jsonStatusCodes.put(statusCode.toString(), count));
+            json.put("errorStatusCodes", jsonStatusCodes);
+            json.put("encode", encodeLatency.toJson(TimeUnit.MICROSECONDS));
+            json.put("exchange", exchangeLatency.toJson(TimeUnit.MICROSECONDS));
+            json.put("decode", decodeLatency.toJson(TimeUnit.MICROSECONDS));
+            return json;
+        }
+    }
+
+    private static final int HTTP_STATUS_CODE_OK = 200;
+
+    private final @NotNull Map<Endpoint, EndpointMetrics> endpoints = new EnumMap<>(Endpoint.class);
+    private final @NotNull LongAdder circuitBreakerOpenings = new LongAdder();
+
+    public InMemorySubscriptionClientMetrics() {
+        for (final Endpoint endpoint : Endpoint.values()) {
+            endpoints.put(endpoint, new EndpointMetrics());
+        }
+    }
+
+    public @NotNull EndpointMetrics get(final @NotNull Endpoint endpoint) {
+        return endpoints.get(endpoint);
+    }
+
+    @Override
+    public void onRequestEncoded(final @NotNull Endpoint endpoint, final long encodeNanos) {
+        endpoints.get(endpoint).encodeLatency.recordNanos(encodeNanos);
+    }
+
+    @Override
+    public void onRequestSent(final @NotNull Endpoint endpoint, final long requestBytes) {
+        final EndpointMetrics metrics = endpoints.get(endpoint);
+        metrics.requests.increment();
+        metrics.bytesSent.add(requestBytes);
+    }
+
+    @Override
+    public void onResponseReceived(
+            final @NotNull Endpoint endpoint,
+            final int statusCode,
+            final long exchangeNanos,
+            final long responseBytes) {
+        final EndpointMetrics metrics = endpoints.get(endpoint);
+        metrics.bytesReceived.add(responseBytes);
+        metrics.exchangeLatency.recordNanos(exchangeNanos);
+        if (statusCode != HTTP_STATUS_CODE_OK) {
+            metrics.errorStatusCodes.computeIfAbsent(statusCode, key -> new LongAdder()).increment();
+        }
+    }
+
+    @Override
+    public void onResponseDecoded(final @NotNull Endpoint endpoint, final long decodeNanos) {
+        endpoints.get(endpoint).decodeLatency.recordNanos(decodeNanos);
+    }
+
+    @Override
+    public void onRequestFailed(
+            final @NotNull Endpoint endpoint, final long exchangeNanos, final @NotNull IOException exception) {
+        final EndpointMetrics metrics = endpoints.get(endpoint);
+        metrics.failures.increment();
+        if (exception instanceof HttpTimeoutException) {
+            metrics.timeouts.increment();
+        }
+        metrics.exchangeLatency.recordNanos(exchangeNanos);
+    }
+
+    @Override
+    public void onRetry(
+            final @NotNull Endpoint endpoint,
+            final int attempt,
+            final long backoffNanos,
+            final @NotNull IOException exception) {
+        endpoints.get(endpoint).retries.increment();
+    }
+
+    @Override
+    public void onHedgeSent(final @NotNull Endpoint endpoint) {
+        endpoints.get(endpoint).hedges.increment();
+    }
+
+    @Override
+    public void onHedgeWon(final @NotNull Endpoint endpoint) {
+        endpoints.get(endpoint).hedgeWins.increment();
+    }
+
+    @Override
+    public void onRequestRejected(final @NotNull Endpoint endpoint) {
+        endpoints.get(endpoint).rejections.increment();
+    }
+
+    @Override
+    public void onCircuitBreakerOpened() {
+        circuitBreakerOpenings.increment();
+    }
+
+    public long getCircuitBreakerOpenCount() {
+        return circuitBreakerOpenings.sum();
+    }
+
+    public @NotNull JSONObject toJson() {
+        final JSONObject json = new JSONObject();
+        endpoints.forEach((endpoint, metrics) -> json.put(endpoint.name().toLowerCase(), metrics.toJson()));
+        json.put("circuitBreakerOpenings", getCircuitBreakerOpenCount());
+        return json;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return toJson().toString();
+    }
+}
@@ -0,0 +1,105 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Topic trie with MQTT wildcard semantics that implements the same contract as the subscription server, without a
+ * separate process. Adds may run concurrently with any number of matches; all reads go through lock-free
+ * {@link ConcurrentHashMap} lookups, so a match never waits for a writer. Level tokens and client IDs are interned,
+ * so each distinct string is held once no matter how many filters share it.
+ * <p>
+ * Matching clients are returned once each, in the order in which the clients first subscribed.
+ */
+public class InMemorySubscriptionStore implements SubscriptionStore {
+
+    private static class Node {
+
+        private final @NotNull Map<String, Node> children = new ConcurrentHashMap<>();
+        private final @NotNull Set<String> subscribers = ConcurrentHashMap.newKeySet();
+    }
+
+    private final @NotNull Node root = new Node();
+    private final @NotNull Interner<String> interner = Interners.newStrongInterner();
+    private final @NotNull Map<String, Long> clientOrder = new ConcurrentHashMap<>();
+    private final @NotNull AtomicLong nextClientOrder = new AtomicLong();
+
+    @Override
+    public void addSubscription(final @NotNull String topicFilter, final @NotNull String clientId) {
+        final String internedClientId = interner.intern(clientId);
+        clientOrder.computeIfAbsent(internedClientId, id -> nextClientOrder.getAndIncrement());
+        Node node = root;
+        for (final String level : Topics.split(topicFilter)) {
+            node = node.children.computeIfAbsent(interner.intern(level), token -> new Node());
+        }
+        node.subscribers.add(internedClientId);
+    }
+
+    @Override
+    public @NotNull ImmutableList<@NotNull String> getMatchingSubscribers(final @NotNull String topic) {
+        final String[] levels = Topics.split(topic);
+        final Set<String> subscribers = new HashSet<>();
+        final boolean systemTopic = !levels[0].isEmpty() && levels[0].charAt(0) == '$';
+        collect(root, levels, 0, !systemTopic, subscribers);
+        final List<String> ordered = new ArrayList<>(subscribers);
+        ordered.sort(Comparator.comparingLong(clientOrder::get));
+        return ImmutableList.copyOf(ordered);
+    }
+
+    @Override
+    public long getSubscriptionCount() {
+        return clientOrder.size();
+    }
+
+    /**
+     * Visits every distinct (topic filter, client ID) pair, for example to snapshot the store.
+     */
+    public void forEachSubscription(final @NotNull BiConsumer<@NotNull String, @NotNull String> action) {
+        root.children.forEach((level, child) -> forEachSubscription(child, level, action));
+    }
+
+    private static void forEachSubscription(
+            final @NotNull Node node,
+            final @NotNull String topicFilter,
+            final @NotNull BiConsumer<@NotNull String, @NotNull String> action) {
+        node.subscribers.forEach(clientId -> action.accept(topicFilter, clientId));
+        node.children.forEach((level, child) ->
+                forEachSubscription(child, topicFilter + Topics.LEVEL_SEPARATOR + level, action));
+    }
+
+    private static void collect(
+            final @NotNull Node node,
+            final @NotNull String @NotNull [] levels,
+            final int index,
+            final boolean wildcardsAllowed,
+            final @NotNull Set<String> subscribers) {
+        final Node multiLevel = wildcardsAllowed ? node.children.get(Topics.MULTI_LEVEL_WILDCARD) : null;
+        if (multiLevel != null) {
+            subscribers.addAll(multiLevel.subscribers);
+        }
+        if (index == levels.length) {
+            subscribers.addAll(node.subscribers);
+            return;
+        }
+        final Node exact = node.children.get(levels[index]);
+        if (exact != null) {
+            collect(exact, levels, index + 1, true, subscribers);
+        }
+        final Node singleLevel = wildcardsAllowed ? node.children.get(Topics.SINGLE_LEVEL_WILDCARD) : null;
+        if (singleLevel != null && singleLevel != exact) {
+            collect(singleLevel, levels, index + 1, true, subscribers);
+        }
+    }
+}
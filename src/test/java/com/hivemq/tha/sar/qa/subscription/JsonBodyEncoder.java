@@ -0,0 +1,176 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes small JSON request bodies as UTF-8 directly into a reusable per-thread buffer, so encoding a request
+ * allocates nothing once the buffer has grown to the body size. Only string values are supported, which is all the
+ * subscription server accepts. A {@code null} value omits the field, like {@link org.json.JSONObject#put}.
+ * <p>
+ * The encoder returned by {@link #get()} is reset by the next call to {@link #get()} on the same thread, so a body
+ * must be copied with {@link #toByteArray()} before it is handed to an HTTP client.
+ */
+public final class JsonBodyEncoder {
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    private static final byte @NotNull [] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte @NotNull [] SHORT_ESCAPES = new byte[0x20];
+
+    static {
+        SHORT_ESCAPES['\b'] = 'b';
+        SHORT_ESCAPES['\t'] = 't';
+        SHORT_ESCAPES['\n'] = 'n';
+        SHORT_ESCAPES['\f'] = 'f';
+        SHORT_ESCAPES['\r'] = 'r';
+    }
+    private static final @NotNull ThreadLocal<JsonBodyEncoder> ENCODERS =
+            ThreadLocal.withInitial(JsonBodyEncoder::new);
+
+    public static @NotNull JsonBodyEncoder get() {
+        final JsonBodyEncoder encoder = ENCODERS.get();
+        encoder.reset();
+        return encoder;
+    }
+
+    private byte @NotNull [] buffer = new byte[INITIAL_CAPACITY];
+    private int size;
+    private boolean needsComma;
+
+    private JsonBodyEncoder() {
+    }
+
+    public @NotNull JsonBodyEncoder beginObject() {
+        writeCommaIfNeeded();
+        write((byte) '{');
+        needsComma = false;
+        return this;
+    }
+
+    public @NotNull JsonBodyEncoder endObject() {
+        write((byte) '}');
+        needsComma = true;
+        return this;
+    }
+
+    public @NotNull JsonBodyEncoder beginArray(final @NotNull String key) {
+        writeCommaIfNeeded();
+        writeString(key);
+        write((byte) ':');
+        write((byte) '[');
+        needsComma = false;
+        return this;
+    }
+
+    public @NotNull JsonBodyEncoder endArray() {
+        write((byte) ']');
+        needsComma = true;
+        return this;
+    }
+
+    public @NotNull JsonBodyEncoder field(final @NotNull String key, final @Nullable String value) {
+        if (value != null) {
+            writeCommaIfNeeded();
+            writeString(key);
+            write((byte) ':');
+            writeString(value);
+            needsComma = true;
+        }
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte @NotNull [] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return new String(buffer, 0, size, StandardCharsets.UTF_8);
+    }
+
+    private void reset() {
+        if (buffer.length > MAX_RETAINED_CAPACITY) {
+            buffer = new byte[INITIAL_CAPACITY];
+        }
+        size = 0;
+        needsComma = false;
+    }
+
+    private void writeCommaIfNeeded() {
+        if (needsComma) {
+            write((byte) ',');
+        }
+    }
+
+    /**
+     * Escapes like {@link org.json.JSONObject#quote(String)} for everything JSON requires. Unpaired surrogates are
+     * replaced with {@code ?}, like {@link String#getBytes} does.
+     */
+    private void writeString(final @NotNull String value) {
+        // Every char takes at most 6 bytes, as an escape or as half of a 4 byte surrogate pair.
+        ensureCapacity(size + 2 + value.length() * 6);
+        final byte[] buffer = this.buffer;
+        int size = this.size;
+        buffer[size++] = '"';
+        final int length = value.length();
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    buffer[size++] = '\\';
+                    buffer[size++] = (byte) c;
+                } else if (c >= 0x20) {
+                    buffer[size++] = (byte) c;
+                } else if (SHORT_ESCAPES[c] != 0) {
+                    buffer[size++] = '\\';
+                    buffer[size++] = SHORT_ESCAPES[c];
+                } else {
+                    buffer[size++] = '\\';
+                    buffer[size++] = 'u';
+                    buffer[size++] = '0';
+                    buffer[size++] = '0';
+                    buffer[size++] = HEX_DIGITS[c >> 4];
+                    buffer[size++] = HEX_DIGITS[c & 0xF];
+                }
+            } else if (c < 0x800) {
+                buffer[size++] = (byte) (0xC0 | c >> 6);
+                buffer[size++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    buffer[size++] = (byte) (0xF0 | codePoint >> 18);
+                    buffer[size++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                    buffer[size++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                    buffer[size++] = (byte) (0x80 | codePoint & 0x3F);
+                } else {
+                    buffer[size++] = '?';
+                }
+            } else {
+                buffer[size++] = (byte) (0xE0 | c >> 12);
+                buffer[size++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[size++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        buffer[size++] = '"';
+        this.size = size;
+    }
+
+    private void write(final byte b) {
+        ensureCapacity(size + 1);
+        buffer[size++] = b;
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+        }
+    }
+}
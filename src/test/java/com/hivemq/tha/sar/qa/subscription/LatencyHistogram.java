@@ -0,0 +1,120 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONObject;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram in the style of HdrHistogram: values below 128 are counted exactly, larger values fall into
+ * one of 64 linear sub-buckets per power of two, which bounds the relative error of any reported value by 1/64.
+ * Recording is lock-free and allocation-free.
+ */
+public class LatencyHistogram {
+
+    private static final int LINEAR_LIMIT = 128;
+    private static final int SUB_BUCKET_COUNT = 64;
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (Long.SIZE - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT;
+
+    private final @NotNull AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final @NotNull AtomicLong totalCount = new AtomicLong();
+    private final @NotNull AtomicLong sum = new AtomicLong();
+    private final @NotNull AtomicLong max = new AtomicLong();
+
+    public void recordNanos(final long nanos) {
+        final long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        totalCount.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    public double getMeanNanos() {
+        final long count = totalCount.get();
+        return count == 0 ? 0 : (double) sum.get() / count;
+    }
+
+    /**
+     * Returns the highest value that is equivalent to the value at the given percentile, so reported percentiles
+     * never understate latency.
+     */
+    public long getValueAtPercentileNanos(final double percentile) {
+        assert percentile >= 0 && percentile <= 100 : "Percentile must be in [0, 100]: " + percentile;
+        final long count = totalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            seen += counts.get(index);
+            if (seen >= rank) {
+                return Math.min(highestEquivalentValue(index), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void add(final @NotNull LatencyHistogram other) {
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            final long count = other.counts.get(index);
+            if (count != 0) {
+                counts.addAndGet(index, count);
+            }
+        }
+        totalCount.addAndGet(other.totalCount.get());
+        sum.addAndGet(other.sum.get());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    public void reset() {
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            counts.set(index, 0);
+        }
+        totalCount.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    public @NotNull JSONObject toJson(final @NotNull TimeUnit unit) {
+        final double nanosPerUnit = unit.toNanos(1);
+        final JSONObject json = new JSONObject();
+        json.put("unit", unit.name().toLowerCase());
+        json.put("count", getCount());
+        json.put("mean", getMeanNanos() / nanosPerUnit);
+        json.put("p50", getValueAtPercentileNanos(50) / nanosPerUnit);
+        json.put("p90", getValueAtPercentileNanos(90) / nanosPerUnit);
+        json.put("p99", getValueAtPercentileNanos(99) / nanosPerUnit);
+        json.put("p99.9", getValueAtPercentileNanos(99.9) / nanosPerUnit);
+        json.put("max", getMaxNanos() / nanosPerUnit);
+        return json;
+    }
+
+    private static int indexOf(final long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        final int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKET_COUNT + (int) ((value >>> shift) - SUB_BUCKET_COUNT);
+    }
+
+    private static long highestEquivalentValue(final int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        final int shift = (index - LINEAR_LIMIT) / SUB_BUCKET_COUNT + 1;
+        final long subBucket = (index - LINEAR_LIMIT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
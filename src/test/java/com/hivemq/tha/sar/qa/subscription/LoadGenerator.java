@@ -0,0 +1,199 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import com.google.common.collect.ImmutableMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Issues operations on a fixed schedule derived from the target rate and measures each latency from the time the
+ * operation was scheduled to start, not from the time it was actually sent. When the server (or the client's
+ * in-flight cap) falls behind, the queueing delay is therefore part of the recorded latency instead of being
+ * silently omitted.
+ */
+public class LoadGenerator {
+
+    public enum Operation {
+        ADD_SUBSCRIPTION,
+        GET_MATCHING_SUBSCRIBERS,
+        GET_SUBSCRIPTION_COUNT
+    }
+
+    private static final int DEFAULT_CLIENT_COUNT = 100;
+    private static final long SEED = 42;
+    private static final int STATUS_REQUEST_TIMEOUT = 408;
+
+    public static class Builder {
+
+        private @Nullable SubscriptionClient client;
+        private @Nullable Double targetRate;
+        private @Nullable Duration duration;
+        private @Nullable TopicTreeGenerator topicTreeGenerator;
+        private int clientCount = DEFAULT_CLIENT_COUNT;
+        private final @NotNull Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+
+        private Builder() {
+        }
+
+        public @NotNull Builder setClient(final @NotNull SubscriptionClient client) {
+            this.client = client;
+            return this;
+        }
+
+        public @NotNull Builder setTargetRate(final double operationsPerSecond) {
+            this.targetRate = operationsPerSecond;
+            return this;
+        }
+
+        public @NotNull Builder setDuration(final @NotNull Duration duration) {
+            this.duration = duration;
+            return this;
+        }
+
+        public @NotNull Builder setTopicTreeGenerator(final @NotNull TopicTreeGenerator topicTreeGenerator) {
+            this.topicTreeGenerator = topicTreeGenerator;
+            return this;
+        }
+
+        public @NotNull Builder setClientCount(final int clientCount) {
+            this.clientCount = clientCount;
+            return this;
+        }
+
+        public @NotNull Builder setWeight(final @NotNull Operation operation, final int weight) {
+            weights.put(operation, weight);
+            return this;
+        }
+
+        public @NotNull LoadGenerator build() {
+            return new LoadGenerator(
+                    Objects.requireNonNull(client),
+                    Objects.requireNonNull(targetRate),
+                    Objects.requireNonNull(duration),
+                    Objects.requireNonNull(topicTreeGenerator),
+                    clientCount,
+                    weights.isEmpty() ? ImmutableMap.of(Operation.GET_MATCHING_SUBSCRIBERS, 1) : weights);
+        }
+    }
+
+    public static @NotNull Builder newBuilder() {
+        return new Builder();
+    }
+
+    private final @NotNull SubscriptionClient client;
+    private final double targetRate;
+    private final @NotNull Duration duration;
+    private final @NotNull TopicTreeGenerator topicTreeGenerator;
+    private final int clientCount;
+    private final @NotNull Operation @NotNull [] operationsByWeight;
+    private final @NotNull Random random = new Random(SEED);
+
+    private LoadGenerator(
+            final @NotNull SubscriptionClient client,
+            final double targetRate,
+            final @NotNull Duration duration,
+            final @NotNull TopicTreeGenerator topicTreeGenerator,
+            final int clientCount,
+            final @NotNull Map<Operation, Integer> weights) {
+        assert targetRate > 0 : "Target rate must be > 0: " + targetRate;
+        assert clientCount > 0 : "Client count must be > 0: " + clientCount;
+        this.client = client;
+        this.targetRate = targetRate;
+        this.duration = duration;
+        this.topicTreeGenerator = topicTreeGenerator;
+        this.clientCount = clientCount;
+        this.operationsByWeight = weights.entrySet()
+                .stream()
+                .flatMap(entry -> Collections.nCopies(entry.getValue(), entry.getKey()).stream())
+                .toArray(Operation[]::new);
+        assert operationsByWeight.length > 0 : "At least one operation must have a weight > 0: " + weights;
+    }
+
+    public @NotNull LoadResult run() throws InterruptedException {
+        final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+        final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+        final Map<Operation, LongAdder> timeouts = new EnumMap<>(Operation.class);
+        for (final Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+            errors.put(operation, new LongAdder());
+            timeouts.put(operation, new LongAdder());
+        }
+        final Phaser pending = new Phaser(1);
+        final double intervalNanos = 1_000_000_000.0 / targetRate;
+        final long start = System.nanoTime();
+        final long end = start + duration.toNanos();
+        for (long i = 0; ; i++) {
+            final long scheduledStart = start + (long) (i * intervalNanos);
+            if (scheduledStart >= end) {
+                break;
+            }
+            parkUntil(scheduledStart);
+            final Operation operation = operationsByWeight[random.nextInt(operationsByWeight.length)];
+            pending.register();
+            issue(operation).whenComplete((result, throwable) -> {
+                latencies.get(operation).recordNanos(System.nanoTime() - scheduledStart);
+                if (throwable != null) {
+                    errors.get(operation).increment();
+                    if (isTimeout(throwable)) {
+                        timeouts.get(operation).increment();
+                    }
+                }
+                pending.arriveAndDeregister();
+            });
+        }
+        pending.arriveAndAwaitAdvance();
+        final ImmutableMap.Builder<Operation, LoadResult.OperationResult> operations = ImmutableMap.builder();
+        for (final Operation operation : Operation.values()) {
+            if (latencies.get(operation).getCount() > 0) {
+                operations.put(operation, new LoadResult.OperationResult(
+                        latencies.get(operation), errors.get(operation).sum(), timeouts.get(operation).sum()));
+            }
+        }
+        return new LoadResult(targetRate, Duration.ofNanos(System.nanoTime() - start), operations.build());
+    }
+
+    private @NotNull CompletableFuture<?> issue(final @NotNull Operation operation) throws InterruptedException {
+        try {
+            switch (operation) {
+                case ADD_SUBSCRIPTION:
+                    return client.addSubscriptionAsync(
+                            topicTreeGenerator.nextTopicFilter(), "client" + random.nextInt(clientCount));
+                case GET_MATCHING_SUBSCRIBERS:
+                    return client.getMatchingSubscribersAsync(topicTreeGenerator.nextTopic());
+                case GET_SUBSCRIPTION_COUNT:
+                    return client.getSubscriptionCountAsync();
+                default:
+                    throw new IllegalStateException("Unknown operation: " + operation);
+            }
+        } catch (final RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static void parkUntil(final long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    static boolean isTimeout(final @NotNull Throwable throwable) {
+        final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ?
+                throwable.getCause() : throwable;
+        return cause instanceof HttpTimeoutException ||
+                (cause instanceof HttpStatusException &&
+                        ((HttpStatusException) cause).getStatusCode() == STATUS_REQUEST_TIMEOUT);
+    }
+}
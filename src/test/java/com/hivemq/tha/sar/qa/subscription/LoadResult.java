@@ -0,0 +1,118 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import com.google.common.collect.ImmutableMap;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONObject;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class LoadResult {
+
+    public static class OperationResult {
+
+        private final @NotNull LatencyHistogram latency;
+        private final long errorCount;
+        private final long timeoutCount;
+
+        OperationResult(final @NotNull LatencyHistogram latency, final long errorCount, final long timeoutCount) {
+            this.latency = latency;
+            this.errorCount = errorCount;
+            this.timeoutCount = timeoutCount;
+        }
+
+        public @NotNull LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getErrorCount() {
+            return errorCount;
+        }
+
+        public long getTimeoutCount() {
+            return timeoutCount;
+        }
+
+        @NotNull JSONObject toJson() {
+            final JSONObject json = new JSONObject();
+            json.put("latency", latency.toJson(TimeUnit.MICROSECONDS));
+            json.put("errors", errorCount);
+            json.put("timeouts", timeoutCount);
+            return json;
+        }
+    }
+
+    private final double targetRate;
+    private final @NotNull Duration duration;
+    private final @NotNull ImmutableMap<LoadGenerator.@NotNull Operation, @NotNull OperationResult> operations;
+
+    LoadResult(
+            final double targetRate,
+            final @NotNull Duration duration,
+            final @NotNull ImmutableMap<LoadGenerator.@NotNull Operation, @NotNull OperationResult> operations) {
+        this.targetRate = targetRate;
+        this.duration = duration;
+        this.operations = operations;
+    }
+
+    public double getTargetRate() {
+        return targetRate;
+    }
+
+    public @NotNull Duration getDuration() {
+        return duration;
+    }
+
+    public @NotNull ImmutableMap<LoadGenerator.@NotNull Operation, @NotNull OperationResult> getOperations() {
+        return operations;
+    }
+
+    public @NotNull LatencyHistogram getLatency() {
+        final LatencyHistogram latency = new LatencyHistogram();
+        operations.values().forEach(operation -> latency.add(operation.getLatency()));
+        return latency;
+    }
+
+    public long getErrorCount() {
+        return operations.values().stream().mapToLong(OperationResult::getErrorCount).sum();
+    }
+
+    public long getTimeoutCount() {
+        return operations.values().stream().mapToLong(OperationResult::getTimeoutCount).sum();
+    }
+
+    public double getThroughput() {
+        final long nanos = duration.toNanos();
+        return nanos == 0 ? 0 : (getLatency().getCount() - getErrorCount()) * 1_000_000_000.0 / nanos;
+    }
+
+    /**
+     * The server is considered saturated once it either fails requests or completes noticeably fewer operations
+     * than were scheduled.
+     */
+    public boolean isSaturated(final double throughputTolerance) {
+        return getErrorCount() > 0 || getThroughput() < targetRate * (1 - throughputTolerance);
+    }
+
+    public @NotNull JSONObject toJson() {
+        final JSONObject json = new JSONObject();
+        json.put("targetRate", targetRate);
+        json.put("durationMillis", duration.toMillis());
+        json.put("throughput", getThroughput());
+        json.put("errors", getErrorCount());
+        json.put("timeouts", getTimeoutCount());
+        json.put("latency", getLatency().toJson(TimeUnit.MICROSECONDS));
+        final JSONObject jsonOperations = new JSONObject();
+        for (final Map.Entry<LoadGenerator.Operation, OperationResult> entry : operations.entrySet()) {
+            jsonOperations.put(entry.getKey().name().toLowerCase(), entry.getValue().toJson());
+        }
+        json.put("operations", jsonOperations);
+        return json;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return toJson().toString();
+    }
+}
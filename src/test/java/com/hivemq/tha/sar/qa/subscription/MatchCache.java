@@ -0,0 +1,175 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the subscribers per topic. The entries are also indexed by the first level of their topic, so adding a
+ * filter with a concrete first level only checks the entries with that first level. A filter starting with a
+ * wildcard still checks all entries.
+ * <p>
+ * A result that was fetched while a matching filter was added may predate the subscription, so it must not be
+ * cached. Invalidations are sequenced, and the last invalidation is tracked per first level, so such a result is
+ * only dropped if an invalidation since it was fetched could have covered its topic.
+ */
+public class MatchCache {
+
+    /**
+     * Keeps the levels of the topic, so an invalidation does not split every cached topic again.
+     */
+    private static class Entry {
+
+        private final @NotNull String topic;
+        private final @NotNull ImmutableList<String> subscribers;
+        private final @NotNull String @Nullable [] topicLevels;
+
+        private Entry(final @NotNull String topic, final @NotNull ImmutableList<String> subscribers) {
+            this.topic = topic;
+            this.subscribers = subscribers;
+            this.topicLevels = Topics.containsWildcard(topic) ? null : Topics.split(topic);
+        }
+
+        /**
+         * Cached "topics" that contain wildcards are not valid MQTT topic names, so they are always invalidated
+         * instead of guessing how the server resolves them.
+         */
+        private boolean isInvalidatedBy(final @NotNull String @NotNull [] filterLevels) {
+            return topicLevels == null || Topics.matches(filterLevels, topicLevels);
+        }
+    }
+
+    private final @NotNull Cache<String, Entry> cache;
+    /**
+     * Maps the first level to the entries by topic. Entries are only removed by identity, so a late removal of a
+     * replaced entry does not unindex its replacement.
+     */
+    private final @NotNull Map<String, Map<String, Entry>> entriesByFirstLevel = new ConcurrentHashMap<>();
+    private final @NotNull Map<String, Entry> wildcardEntries = new ConcurrentHashMap<>();
+    private final @NotNull AtomicLong sequence = new AtomicLong();
+    private final @NotNull Map<String, Long> invalidatedFirstLevels = new ConcurrentHashMap<>();
+    private final @NotNull AtomicLong invalidatedAll = new AtomicLong();
+
+    public MatchCache(final long maximumSize) {
+        assert maximumSize > 0 : "Maximum size must be > 0: " + maximumSize;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .removalListener(this::unindex)
+                .build();
+    }
+
+    public @Nullable ImmutableList<@NotNull String> get(final @NotNull String topic) {
+        final Entry entry = cache.getIfPresent(topic);
+        return entry == null ? null : entry.subscribers;
+    }
+
+    /**
+     * Returns the sequence number of the last invalidation, to be passed to {@link #put} with the result of a
+     * match that is sent afterwards.
+     */
+    public long getGeneration() {
+        return sequence.get();
+    }
+
+    /**
+     * Drops the result if an invalidation that could cover the topic happened since {@code generation} was read,
+     * because the result may predate a subscription that the invalidation was meant to cover.
+     */
+    public void put(
+            final @NotNull String topic,
+            final @NotNull ImmutableList<@NotNull String> subscribers,
+            final long generation) {
+        final Entry entry = new Entry(topic, subscribers);
+        // Indexed before the staleness check, so a concurrent invalidation either finds the entry or is seen.
+        getIndex(entry).put(topic, entry);
+        cache.put(topic, entry);
+        if (isInvalidatedSince(entry, generation)) {
+            remove(entry);
+        }
+    }
+
+    public void invalidateMatching(final @NotNull String topicFilter) {
+        final long invalidation = sequence.incrementAndGet();
+        final String[] filterLevels = Topics.split(topicFilter);
+        final String firstLevel = filterLevels[0];
+        if (Topics.isWildcard(firstLevel)) {
+            invalidatedAll.accumulateAndGet(invalidation, Math::max);
+            for (final Map<String, Entry> entries : entriesByFirstLevel.values()) {
+                invalidateMatching(entries, filterLevels);
+            }
+        } else {
+            invalidatedFirstLevels.merge(firstLevel, invalidation, Math::max);
+            final Map<String, Entry> entries = entriesByFirstLevel.get(firstLevel);
+            if (entries != null) {
+                invalidateMatching(entries, filterLevels);
+            }
+        }
+        invalidateMatching(wildcardEntries, filterLevels);
+    }
+
+    public void invalidateAll() {
+        invalidatedAll.accumulateAndGet(sequence.incrementAndGet(), Math::max);
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    private void invalidateMatching(
+            final @NotNull Map<String, Entry> entries, final @NotNull String @NotNull [] filterLevels) {
+        for (final Entry entry : entries.values()) {
+            if (entry.isInvalidatedBy(filterLevels)) {
+                remove(entry);
+            }
+        }
+    }
+
+    private boolean isInvalidatedSince(final @NotNull Entry entry, final long generation) {
+        if (entry.topicLevels == null) {
+            return sequence.get() != generation;
+        }
+        final Long invalidatedFirstLevel = invalidatedFirstLevels.get(entry.topicLevels[0]);
+        return invalidatedAll.get() > generation ||
+                (invalidatedFirstLevel != null && invalidatedFirstLevel > generation);
+    }
+
+    private void remove(final @NotNull Entry entry) {
+        cache.asMap().remove(entry.topic, entry);
+        getIndex(entry).remove(entry.topic, entry);
+    }
+
+    private void unindex(final @NotNull RemovalNotification<String, Entry> notification) {
+        final Entry entry = notification.getValue();
+        if (entry != null) {
+            getIndex(entry).remove(entry.topic, entry);
+        }
+    }
+
+    private @NotNull Map<String, Entry> getIndex(final @NotNull Entry entry) {
+        if (entry.topicLevels == null) {
+            return wildcardEntries;
+        }
+        return entriesByFirstLevel.computeIfAbsent(entry.topicLevels[0], firstLevel -> new ConcurrentHashMap<>());
+    }
+}
@@ -0,0 +1,136 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single-flight coalescing of match requests: while a match for a topic is in flight, further matches for the same
+ * topic wait for it and share its parsed result instead of sending their own request. Unlike a {@link MatchCache},
+ * a result is never served after its request completed, so coalescing does not return stale subscribers.
+ * <p>
+ * A subscription added through the client detaches the in-flight matches it may affect, so matches started after
+ * the add completed always send a new request.
+ */
+public class MatchCoalescer {
+
+    interface Call {
+
+        @NotNull ImmutableList<@NotNull String> send() throws IOException, InterruptedException;
+    }
+
+    interface AsyncCall {
+
+        @NotNull CompletableFuture<ImmutableList<@NotNull String>> send() throws InterruptedException;
+    }
+
+    private final @NotNull ConcurrentHashMap<String, CompletableFuture<ImmutableList<String>>> inFlight =
+            new ConcurrentHashMap<>();
+    private final @NotNull LongAdder requestCount = new LongAdder();
+    private final @NotNull LongAdder coalescedCount = new LongAdder();
+
+    @NotNull ImmutableList<@NotNull String> coalesce(final @NotNull String topic, final @NotNull Call call)
+            throws IOException, InterruptedException {
+        while (true) {
+            final CompletableFuture<ImmutableList<String>> flight = new CompletableFuture<>();
+            final CompletableFuture<ImmutableList<String>> existingFlight = inFlight.putIfAbsent(topic, flight);
+            if (existingFlight == null) {
+                requestCount.increment();
+                final ImmutableList<String> subscribers;
+                try {
+                    subscribers = call.send();
+                } catch (final IOException | InterruptedException | RuntimeException e) {
+                    inFlight.remove(topic, flight);
+                    flight.completeExceptionally(e);
+                    throw e;
+                }
+                inFlight.remove(topic, flight);
+                flight.complete(subscribers);
+                return subscribers;
+            }
+            coalescedCount.increment();
+            try {
+                return existingFlight.get();
+            } catch (final ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof InterruptedException) {
+                    // Only the thread that sent the request was interrupted, so this one sends its own.
+                    continue;
+                }
+                // Rethrown unchanged, so waiters can tell failures apart by type and status code like the sender.
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    @NotNull CompletableFuture<ImmutableList<@NotNull String>> coalesceAsync(
+            final @NotNull String topic, final @NotNull AsyncCall call) throws InterruptedException {
+        final CompletableFuture<ImmutableList<String>> flight = new CompletableFuture<>();
+        final CompletableFuture<ImmutableList<String>> existingFlight = inFlight.putIfAbsent(topic, flight);
+        if (existingFlight != null) {
+            coalescedCount.increment();
+            return existingFlight.copy();
+        }
+        requestCount.increment();
+        final CompletableFuture<ImmutableList<String>> response;
+        try {
+            response = call.send();
+        } catch (final InterruptedException | RuntimeException e) {
+            inFlight.remove(topic, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+        response.whenComplete((subscribers, throwable) -> {
+            inFlight.remove(topic, flight);
+            if (throwable != null) {
+                flight.completeExceptionally(throwable);
+            } else {
+                flight.complete(subscribers);
+            }
+        });
+        return flight.copy();
+    }
+
+    /**
+     * Detaches the in-flight matches of topics the filter matches, so they still complete for the callers waiting
+     * on them but are not joined anymore. Topics that contain wildcards are always detached, like in the
+     * {@link MatchCache}.
+     */
+    void detachMatching(final @NotNull String topicFilter) {
+        if (inFlight.isEmpty()) {
+            return;
+        }
+        final String[] filterLevels = Topics.split(topicFilter);
+        inFlight.keySet().removeIf(
+                topic -> Topics.containsWildcard(topic) || Topics.matches(filterLevels, Topics.split(topic)));
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * The number of matches that sent their own request.
+     */
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    /**
+     * The number of matches that shared the request of a concurrent identical match instead of sending their own.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+}
@@ -0,0 +1,59 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+enum NoOpSubscriptionClientMetrics implements SubscriptionClientMetrics {
+
+    INSTANCE;
+
+    @Override
+    public void onRequestEncoded(final @NotNull Endpoint endpoint, final long encodeNanos) {
+    }
+
+    @Override
+    public void onRequestSent(final @NotNull Endpoint endpoint, final long requestBytes) {
+    }
+
+    @Override
+    public void onResponseReceived(
+            final @NotNull Endpoint endpoint,
+            final int statusCode,
+            final long exchangeNanos,
+            final long responseBytes) {
+    }
+
+    @Override
+    public void onResponseDecoded(final @NotNull Endpoint endpoint, final long decodeNanos) {
+    }
+
+    @Override
+    public void onRequestFailed(
+            final @NotNull Endpoint endpoint, final long exchangeNanos, final @NotNull IOException exception) {
+    }
+
+    @Override
+    public void onRetry(
+            final @NotNull Endpoint endpoint,
+            final int attempt,
+            final long backoffNanos,
+            final @NotNull IOException exception) {
+    }
+
+    @Override
+    public void onHedgeSent(final @NotNull Endpoint endpoint) {
+    }
+
+    @Override
+    public void onHedgeWon(final @NotNull Endpoint endpoint) {
+    }
+
+    @Override
+    public void onRequestRejected(final @NotNull Endpoint endpoint) {
+    }
+
+    @Override
+    public void onCircuitBreakerOpened() {
+    }
+}
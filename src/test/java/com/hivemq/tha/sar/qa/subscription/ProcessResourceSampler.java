@@ -0,0 +1,90 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Samples a process and its descendants, so the server is covered even if the shell does not exec into it.
+ * CPU time comes from {@link ProcessHandle.Info}, RSS and thread count from {@code /proc/<pid>/status}, which only
+ * exists on Linux. Elsewhere both are reported as 0.
+ */
+class ProcessResourceSampler {
+
+    private final @NotNull ProcessHandle process;
+    private final @NotNull List<ResourceReport.Sample> samples = new ArrayList<>();
+    private final @NotNull ScheduledExecutorService scheduler;
+
+    ProcessResourceSampler(final @NotNull ProcessHandle process, final @NotNull Duration interval) {
+        this.process = process;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "resource-sampler-" + process.pid());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::sample, 0, interval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    void sample() {
+        final List<ProcessHandle> tree = Stream.concat(Stream.of(process), process.descendants())
+                .filter(ProcessHandle::isAlive)
+                .collect(Collectors.toList());
+        if (tree.isEmpty()) {
+            return;
+        }
+        long rssBytes = 0;
+        long cpuNanos = 0;
+        int threadCount = 0;
+        for (final ProcessHandle handle : tree) {
+            cpuNanos += handle.info().totalCpuDuration().map(Duration::toNanos).orElse(0L);
+            final Path status = Paths.get("/proc", String.valueOf(handle.pid()), "status");
+            try {
+                for (final String line : Files.readAllLines(status, StandardCharsets.UTF_8)) {
+                    if (line.startsWith("VmRSS:")) {
+                        rssBytes += parseStatusValue(line) * 1024;
+                    } else if (line.startsWith("Threads:")) {
+                        threadCount += (int) parseStatusValue(line);
+                    }
+                }
+            } catch (final IOException e) {
+                // Not on Linux, or the process exited after the liveness check.
+            }
+        }
+        final ResourceReport.Sample sample =
+                new ResourceReport.Sample(System.nanoTime(), rssBytes, Duration.ofNanos(cpuNanos), threadCount);
+        synchronized (samples) {
+            samples.add(sample);
+        }
+    }
+
+    @NotNull ImmutableList<ResourceReport.@NotNull Sample> getSamples() {
+        synchronized (samples) {
+            return ImmutableList.copyOf(samples);
+        }
+    }
+
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Parses lines like {@code VmRSS:	   51200 kB} and {@code Threads:	17}.
+     */
+    private static long parseStatusValue(final @NotNull String line) {
+        final String[] tokens = line.substring(line.indexOf(':') + 1).trim().split("\\s+");
+        return Long.parseLong(tokens[0]);
+    }
+}
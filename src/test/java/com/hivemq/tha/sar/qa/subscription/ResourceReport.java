@@ -0,0 +1,216 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONObject;
+
+import java.time.Duration;
+
+/**
+ * Resource usage of a server process, sampled by {@link SubscriptionServerExtension} when it runs with
+ * {@link ServerInstrumentation}. Values cover the whole process tree started by the extension, except for the heap
+ * samples, which are read from the server's GC log.
+ */
+public class ResourceReport {
+
+    public static class Sample {
+
+        private final long nanoTime;
+        private final long rssBytes;
+        private final @NotNull Duration cpuTime;
+        private final int threadCount;
+
+        Sample(final long nanoTime, final long rssBytes, final @NotNull Duration cpuTime, final int threadCount) {
+            this.nanoTime = nanoTime;
+            this.rssBytes = rssBytes;
+            this.cpuTime = cpuTime;
+            this.threadCount = threadCount;
+        }
+
+        /**
+         * The {@link System#nanoTime()} at which the sample was taken.
+         */
+        public long getNanoTime() {
+            return nanoTime;
+        }
+
+        public long getRssBytes() {
+            return rssBytes;
+        }
+
+        /**
+         * Total CPU time the process tree used since it was started.
+         */
+        public @NotNull Duration getCpuTime() {
+            return cpuTime;
+        }
+
+        public int getThreadCount() {
+            return threadCount;
+        }
+
+        @Override
+        public @NotNull String toString() {
+            return String.format("Sample{rss=%d, cpuTime=%s, threads=%d}", rssBytes, cpuTime, threadCount);
+        }
+    }
+
+    /**
+     * The heap occupancy right after a garbage collection. Unlike the RSS, it does not include heap that the JVM
+     * reserved but does not use, so it levels off as soon as the live data stops growing.
+     */
+    public static class HeapSample {
+
+        private final long nanoTime;
+        private final long postGcHeapBytes;
+
+        HeapSample(final long nanoTime, final long postGcHeapBytes) {
+            this.nanoTime = nanoTime;
+            this.postGcHeapBytes = postGcHeapBytes;
+        }
+
+        /**
+         * The {@link System#nanoTime()} at which the collection ended, derived from the uptime in the GC log.
+         */
+        public long getNanoTime() {
+            return nanoTime;
+        }
+
+        public long getPostGcHeapBytes() {
+            return postGcHeapBytes;
+        }
+
+        @Override
+        public @NotNull String toString() {
+            return String.format("HeapSample{postGcHeap=%d}", postGcHeapBytes);
+        }
+    }
+
+    private final int threadCount;
+    private final @NotNull Duration requestTimeout;
+    private final @NotNull ImmutableList<@NotNull Sample> samples;
+    private final @NotNull ImmutableList<@NotNull HeapSample> heapSamples;
+
+    ResourceReport(
+            final int threadCount,
+            final @NotNull Duration requestTimeout,
+            final @NotNull ImmutableList<@NotNull Sample> samples,
+            final @NotNull ImmutableList<@NotNull HeapSample> heapSamples) {
+        this.threadCount = threadCount;
+        this.requestTimeout = requestTimeout;
+        this.samples = samples;
+        this.heapSamples = heapSamples;
+    }
+
+    /**
+     * The thread count the server was started with, not the sampled thread count of the process.
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public @NotNull Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    public @NotNull ImmutableList<@NotNull Sample> getSamples() {
+        return samples;
+    }
+
+    /**
+     * One sample per garbage collection, empty if the server is not logging its garbage collections.
+     */
+    public @NotNull ImmutableList<@NotNull HeapSample> getHeapSamples() {
+        return heapSamples;
+    }
+
+    /**
+     * Keeps the samples taken at or after the given {@link System#nanoTime()}, plus the last sample before it as the
+     * baseline for growth and CPU time. Heap samples are only kept from the given time on.
+     */
+    public @NotNull ResourceReport since(final long nanoTime) {
+        int first = 0;
+        while (first < samples.size() - 1 && samples.get(first + 1).getNanoTime() - nanoTime <= 0) {
+            first++;
+        }
+        int firstHeapSample = 0;
+        while (firstHeapSample < heapSamples.size() && heapSamples.get(firstHeapSample).getNanoTime() - nanoTime < 0) {
+            firstHeapSample++;
+        }
+        return new ResourceReport(
+                threadCount,
+                requestTimeout,
+                samples.subList(first, samples.size()),
+                heapSamples.subList(firstHeapSample, heapSamples.size()));
+    }
+
+    public @NotNull Duration getDuration() {
+        return samples.size() < 2 ? Duration.ZERO :
+                Duration.ofNanos(last().getNanoTime() - samples.get(0).getNanoTime());
+    }
+
+    public long getPeakRssBytes() {
+        return samples.stream().mapToLong(Sample::getRssBytes).max().orElse(0);
+    }
+
+    public long getRssGrowthBytes() {
+        return samples.isEmpty() ? 0 : last().getRssBytes() - samples.get(0).getRssBytes();
+    }
+
+    /**
+     * The lowest heap occupancy after any of the garbage collections, or -1 if there was none.
+     */
+    public long getMinPostGcHeapBytes() {
+        return heapSamples.stream().mapToLong(HeapSample::getPostGcHeapBytes).min().orElse(-1);
+    }
+
+    public int getPeakThreadCount() {
+        return samples.stream().mapToInt(Sample::getThreadCount).max().orElse(0);
+    }
+
+    public @NotNull Duration getCpuTime() {
+        return samples.isEmpty() ? Duration.ZERO : last().getCpuTime().minus(samples.get(0).getCpuTime());
+    }
+
+    /**
+     * The average number of cores the process tree kept busy.
+     */
+    public double getCpuLoad() {
+        final long nanos = getDuration().toNanos();
+        return nanos == 0 ? 0 : (double) getCpuTime().toNanos() / nanos;
+    }
+
+    public @NotNull JSONObject toJson() {
+        final JSONObject json = new JSONObject();
+        json.put("threadCount", threadCount);
+        json.put("requestTimeoutMillis", requestTimeout.toMillis());
+        json.put("samples", samples.size());
+        json.put("durationMillis", getDuration().toMillis());
+        json.put("cpuTimeMillis", getCpuTime().toMillis());
+        json.put("cpuLoad", getCpuLoad());
+        json.put("startRssBytes", samples.isEmpty() ? 0 : samples.get(0).getRssBytes());
+        json.put("peakRssBytes", getPeakRssBytes());
+        json.put("rssGrowthBytes", getRssGrowthBytes());
+        json.put("peakThreads", getPeakThreadCount());
+        json.put("gcCount", heapSamples.size());
+        json.put("minPostGcHeapBytes", getMinPostGcHeapBytes());
+        return json;
+    }
+
+    private @NotNull Sample last() {
+        return samples.get(samples.size() - 1);
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return String.format(
+                "ResourceReport{threadCount=%d, requestTimeout=%s, duration=%s, cpuLoad=%.2f, peakRss=%d, " +
+                        "rssGrowth=%d}",
+                threadCount,
+                requestTimeout,
+                getDuration(),
+                getCpuLoad(),
+                getPeakRssBytes(),
+                getRssGrowthBytes());
+    }
+}
@@ -0,0 +1,113 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import com.hivemq.tha.sar.qa.subscription.SubscriptionClientMetrics.Endpoint;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries failed requests with exponential backoff and full jitter: the n-th retry waits a random time between 0 and
+ * {@code min(maxBackoff, initialBackoff * 2^(n-1))}, so clients that failed together do not retry together.
+ * <p>
+ * Matches and counts are idempotent and are retried on every failure that may succeed later: timeouts, refused or
+ * broken connections, and the status codes a saturated server answers with. Adds are not idempotent, because the
+ * server reports a subscription once for every time it was added. An add that timed out may still be processed, so
+ * adds are only retried if the server certainly did not process them: if the connection was refused, or if the
+ * server rejected them as too many or unavailable. Other status codes, for example for a malformed request, and
+ * requests rejected by an open {@link CircuitBreaker} are never retried.
+ */
+public class RetryPolicy {
+
+    private static final int STATUS_TOO_MANY_REQUESTS = 429;
+    private static final int STATUS_SERVICE_UNAVAILABLE = 503;
+
+    public static class Builder {
+
+        private int maxAttempts = 3;
+        private @NotNull Duration initialBackoff = Duration.ofMillis(10);
+        private @NotNull Duration maxBackoff = Duration.ofSeconds(1);
+
+        private Builder() {
+        }
+
+        /**
+         * The number of attempts including the first one.
+         */
+        public @NotNull Builder setMaxAttempts(final int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        public @NotNull Builder setInitialBackoff(final @NotNull Duration initialBackoff) {
+            this.initialBackoff = initialBackoff;
+            return this;
+        }
+
+        public @NotNull Builder setMaxBackoff(final @NotNull Duration maxBackoff) {
+            this.maxBackoff = maxBackoff;
+            return this;
+        }
+
+        public @NotNull RetryPolicy build() {
+            return new RetryPolicy(maxAttempts, initialBackoff, maxBackoff);
+        }
+    }
+
+    public static @NotNull Builder newBuilder() {
+        return new Builder();
+    }
+
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+
+    private RetryPolicy(
+            final int maxAttempts, final @NotNull Duration initialBackoff, final @NotNull Duration maxBackoff) {
+        assert maxAttempts > 0 : "Max attempts must be > 0: " + maxAttempts;
+        assert !initialBackoff.isNegative() : "Initial backoff must be >= 0: " + initialBackoff;
+        assert maxBackoff.compareTo(initialBackoff) >= 0 : "Max backoff must be >= initial backoff: " + maxBackoff;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Returns whether a request that failed with the exception in the given attempt, starting at 1, is retried.
+     */
+    public boolean isRetried(
+            final @NotNull Endpoint endpoint, final int attempt, final @NotNull Throwable throwable) {
+        if (attempt >= maxAttempts || !(throwable instanceof IOException) ||
+                throwable instanceof CircuitBreakerOpenException) {
+            return false;
+        }
+        if (throwable instanceof HttpStatusException) {
+            final int statusCode = ((HttpStatusException) throwable).getStatusCode();
+            return statusCode == STATUS_TOO_MANY_REQUESTS || statusCode == STATUS_SERVICE_UNAVAILABLE ||
+                    (isIdempotent(endpoint) && CircuitBreaker.isOverloadStatusCode(statusCode));
+        }
+        return isIdempotent(endpoint) || throwable instanceof ConnectException;
+    }
+
+    private static boolean isIdempotent(final @NotNull Endpoint endpoint) {
+        return endpoint == Endpoint.GET_MATCHING_SUBSCRIBERS || endpoint == Endpoint.GET_SUBSCRIPTION_COUNT;
+    }
+
+    /**
+     * Returns the jittered backoff before the given retry, starting at 1.
+     */
+    public long getBackoffNanos(final int retry) {
+        assert retry > 0 : "Retry must be > 0: " + retry;
+        long ceiling = initialBackoffNanos;
+        for (int i = 1; i < retry && ceiling < maxBackoffNanos; i++) {
+            ceiling <<= 1;
+        }
+        return ThreadLocalRandom.current().nextLong(Math.min(ceiling, maxBackoffNanos) + 1);
+    }
+}
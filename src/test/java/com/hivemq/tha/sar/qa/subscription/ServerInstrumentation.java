@@ -0,0 +1,106 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Options to observe a server process: a JFR recording and a GC log written to the output directory when the
+ * process exits, and a sample of its RSS, CPU time and thread count every sample interval.
+ */
+public class ServerInstrumentation {
+
+    public static class Builder {
+
+        private @NotNull Path outputDirectory = Paths.get("target", "server-instrumentation");
+        private boolean flightRecording = true;
+        private boolean gcLogging = true;
+        private @NotNull Duration sampleInterval = Duration.ofSeconds(1);
+
+        private Builder() {
+        }
+
+        public @NotNull Builder setOutputDirectory(final @NotNull Path outputDirectory) {
+            this.outputDirectory = outputDirectory;
+            return this;
+        }
+
+        public @NotNull Builder setFlightRecording(final boolean flightRecording) {
+            this.flightRecording = flightRecording;
+            return this;
+        }
+
+        public @NotNull Builder setGcLogging(final boolean gcLogging) {
+            this.gcLogging = gcLogging;
+            return this;
+        }
+
+        public @NotNull Builder setSampleInterval(final @NotNull Duration sampleInterval) {
+            this.sampleInterval = sampleInterval;
+            return this;
+        }
+
+        public @NotNull ServerInstrumentation build() {
+            return new ServerInstrumentation(
+                    outputDirectory.toAbsolutePath(), flightRecording, gcLogging, sampleInterval);
+        }
+    }
+
+    public static @NotNull Builder newBuilder() {
+        return new Builder();
+    }
+
+    private final @NotNull Path outputDirectory;
+    private final boolean flightRecording;
+    private final boolean gcLogging;
+    private final @NotNull Duration sampleInterval;
+
+    private ServerInstrumentation(
+            final @NotNull Path outputDirectory,
+            final boolean flightRecording,
+            final boolean gcLogging,
+            final @NotNull Duration sampleInterval) {
+        assert !sampleInterval.isNegative() && !sampleInterval.isZero() :
+                "Sample interval must be positive: " + sampleInterval;
+        this.outputDirectory = outputDirectory;
+        this.flightRecording = flightRecording;
+        this.gcLogging = gcLogging;
+        this.sampleInterval = sampleInterval;
+    }
+
+    public @NotNull Path getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    public @NotNull Duration getSampleInterval() {
+        return sampleInterval;
+    }
+
+    public @Nullable Path getFlightRecordingFile(final @NotNull String recordingName) {
+        return flightRecording ? outputDirectory.resolve(recordingName + ".jfr") : null;
+    }
+
+    public @Nullable Path getGcLogFile(final @NotNull String recordingName) {
+        return gcLogging ? outputDirectory.resolve(recordingName + "-gc.log") : null;
+    }
+
+    /**
+     * The recording is dumped on exit, which includes the SIGTERM sent by {@link SubscriptionServerExtension#stop()}.
+     */
+    @NotNull ImmutableList<@NotNull String> getJvmOptions(final @NotNull String recordingName) {
+        final ImmutableList.Builder<String> options = ImmutableList.builder();
+        final Path flightRecordingFile = getFlightRecordingFile(recordingName);
+        if (flightRecordingFile != null) {
+            options.add("-XX:StartFlightRecording=dumponexit=true,settings=profile,filename=" + flightRecordingFile);
+        }
+        final Path gcLogFile = getGcLogFile(recordingName);
+        if (gcLogFile != null) {
+            options.add("-Xlog:gc*,safepoint:file=" + gcLogFile + ":time,uptime,level,tags");
+        }
+        return options.build();
+    }
+}
@@ -0,0 +1,198 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Spreads subscriptions over several servers by the first level of their topic filter. A first level is assigned to
+ * a shard explicitly, or by a consistent hash, so adding a shard only moves the first levels that move to it.
+ * <p>
+ * A filter with a concrete first level is added to its shard only. A filter starting with a wildcard can match
+ * topics of every shard, so it is added to all shards in parallel. A match for a topic therefore queries only the
+ * shard of its first level. A "topic" containing wildcards is not a valid MQTT topic name, so it is sent to all
+ * shards in parallel and their subscribers are merged without duplicates.
+ * <p>
+ * A client can be subscribed on several shards, and the servers only report how many clients they have, not which.
+ * The subscription count is therefore the sum of the counts of the shards, which counts such a client once per
+ * shard. The number of distinct clients is only known for the subscriptions added through this client.
+ */
+public class ShardedSubscriptionClient implements SubscriptionStore {
+
+    public static class Builder {
+
+        private final @NotNull List<SubscriptionClient> shards = new ArrayList<>();
+        private final @NotNull Map<String, Integer> firstLevelShards = new HashMap<>();
+
+        private Builder() {
+        }
+
+        public @NotNull Builder addShard(final @NotNull SubscriptionClient shard) {
+            shards.add(shard);
+            return this;
+        }
+
+        /**
+         * Pins a first level to a shard, for example to keep a large tenant on a server of its own.
+         */
+        public @NotNull Builder setShardForFirstLevel(final @NotNull String firstLevel, final int shardIndex) {
+            firstLevelShards.put(firstLevel, shardIndex);
+            return this;
+        }
+
+        public @NotNull ShardedSubscriptionClient build() {
+            return new ShardedSubscriptionClient(ImmutableList.copyOf(shards), ImmutableMap.copyOf(firstLevelShards));
+        }
+    }
+
+    public static @NotNull Builder newBuilder() {
+        return new Builder();
+    }
+
+    private final @NotNull ImmutableList<SubscriptionClient> shards;
+    private final @NotNull ImmutableMap<String, Integer> firstLevelShards;
+    private final @NotNull Set<String> clientIds = ConcurrentHashMap.newKeySet();
+
+    private ShardedSubscriptionClient(
+            final @NotNull ImmutableList<SubscriptionClient> shards,
+            final @NotNull ImmutableMap<String, Integer> firstLevelShards) {
+        assert !shards.isEmpty() : "At least one shard is required";
+        assert firstLevelShards.values().stream().allMatch(shardIndex -> shardIndex >= 0 && shardIndex < shards.size())
+                : "Pinned shard indexes must be < " + shards.size() + ": " + firstLevelShards;
+        this.shards = shards;
+        this.firstLevelShards = firstLevelShards;
+    }
+
+    public @NotNull ImmutableList<@NotNull SubscriptionClient> getShards() {
+        return shards;
+    }
+
+    /**
+     * Returns the index of the shard a topic or a filter with a concrete first level belongs to.
+     */
+    public int getShardIndex(final @NotNull String topic) {
+        final String firstLevel = Topics.split(topic)[0];
+        final Integer pinnedShardIndex = firstLevelShards.get(firstLevel);
+        if (pinnedShardIndex != null) {
+            return pinnedShardIndex;
+        }
+        return Hashing.consistentHash(
+                Hashing.murmur3_128().hashString(firstLevel, StandardCharsets.UTF_8), shards.size());
+    }
+
+    /**
+     * A filter starting with a wildcard stays added on the shards that accepted it if other shards failed. The
+     * exception then names the failed shards and carries their failures as suppressed exceptions.
+     */
+    @Override
+    public void addSubscription(final @NotNull String topicFilter, final @NotNull String clientId)
+            throws IOException, InterruptedException {
+        if (!Topics.isWildcard(Topics.split(topicFilter)[0])) {
+            shards.get(getShardIndex(topicFilter)).addSubscription(topicFilter, clientId);
+        } else {
+            final List<CompletableFuture<Void>> futures = new ArrayList<>(shards.size());
+            for (final SubscriptionClient shard : shards) {
+                futures.add(shard.addSubscriptionAsync(topicFilter, clientId));
+            }
+            final List<Integer> failedShardIndexes = new ArrayList<>();
+            final List<IOException> failures = new ArrayList<>();
+            for (int shardIndex = 0; shardIndex < futures.size(); shardIndex++) {
+                try {
+                    join(futures.get(shardIndex));
+                } catch (final IOException e) {
+                    failedShardIndexes.add(shardIndex);
+                    failures.add(e);
+                }
+            }
+            if (!failures.isEmpty()) {
+                final IOException exception = new IOException(String.format(
+                        "Adding %s for %s failed on shards %s of %d, it stays added on the others",
+                        topicFilter,
+                        clientId,
+                        failedShardIndexes,
+                        shards.size()));
+                failures.forEach(exception::addSuppressed);
+                throw exception;
+            }
+        }
+        clientIds.add(clientId);
+    }
+
+    @Override
+    public @NotNull ImmutableList<@NotNull String> getMatchingSubscribers(final @NotNull String topic)
+            throws IOException, InterruptedException {
+        if (!Topics.containsWildcard(topic)) {
+            return shards.get(getShardIndex(topic)).getMatchingSubscribers(topic);
+        }
+        final List<CompletableFuture<ImmutableList<String>>> futures = new ArrayList<>(shards.size());
+        for (final SubscriptionClient shard : shards) {
+            futures.add(shard.getMatchingSubscribersAsync(topic));
+        }
+        // Filters starting with a wildcard are on every shard, so their subscribers are reported by every shard.
+        final Set<String> subscribers = new LinkedHashSet<>();
+        for (final CompletableFuture<ImmutableList<String>> future : futures) {
+            subscribers.addAll(join(future));
+        }
+        return ImmutableList.copyOf(subscribers);
+    }
+
+    /**
+     * Returns the sum of the subscription counts of the shards.
+     */
+    @Override
+    public long getSubscriptionCount() throws IOException, InterruptedException {
+        long subscriptionCount = 0;
+        for (final long shardSubscriptionCount : getShardSubscriptionCounts()) {
+            subscriptionCount += shardSubscriptionCount;
+        }
+        return subscriptionCount;
+    }
+
+    /**
+     * Returns the number of distinct clients that were subscribed through this client, without querying the shards.
+     * Subscriptions added to the servers in other ways are not included.
+     */
+    public long getLocalClientCount() {
+        return clientIds.size();
+    }
+
+    /**
+     * Returns the subscription count of each shard, by shard index. A client subscribed on several shards, for
+     * example with a filter starting with a wildcard, is counted by each of them.
+     */
+    public @NotNull ImmutableList<@NotNull Long> getShardSubscriptionCounts() throws IOException, InterruptedException {
+        final List<CompletableFuture<Long>> futures = new ArrayList<>(shards.size());
+        for (final SubscriptionClient shard : shards) {
+            futures.add(shard.getSubscriptionCountAsync());
+        }
+        final ImmutableList.Builder<Long> subscriptionCounts = ImmutableList.builderWithExpectedSize(shards.size());
+        for (final CompletableFuture<Long> future : futures) {
+            subscriptionCounts.add(join(future));
+        }
+        return subscriptionCounts.build();
+    }
+
+    private static <T> T join(final @NotNull CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
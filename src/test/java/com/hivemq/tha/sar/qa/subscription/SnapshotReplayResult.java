@@ -0,0 +1,96 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+
+public class SnapshotReplayResult {
+
+    private final long subscriptionCount;
+    private final long failedSubscriptionCount;
+    private final @NotNull Duration duration;
+    private final long expectedServerCount;
+    private final long actualServerCount;
+    private final int sampleCount;
+    private final @NotNull ImmutableList<@NotNull Subscription> unmatchedSamples;
+
+    SnapshotReplayResult(
+            final long subscriptionCount,
+            final long failedSubscriptionCount,
+            final @NotNull Duration duration,
+            final long expectedServerCount,
+            final long actualServerCount,
+            final int sampleCount,
+            final @NotNull ImmutableList<@NotNull Subscription> unmatchedSamples) {
+        this.subscriptionCount = subscriptionCount;
+        this.failedSubscriptionCount = failedSubscriptionCount;
+        this.duration = duration;
+        this.expectedServerCount = expectedServerCount;
+        this.actualServerCount = actualServerCount;
+        this.sampleCount = sampleCount;
+        this.unmatchedSamples = unmatchedSamples;
+    }
+
+    public long getSubscriptionCount() {
+        return subscriptionCount;
+    }
+
+    public long getFailedSubscriptionCount() {
+        return failedSubscriptionCount;
+    }
+
+    /**
+     * The time spent loading, without the verification.
+     */
+    public @NotNull Duration getDuration() {
+        return duration;
+    }
+
+    public double getSubscriptionsPerSecond() {
+        final long nanos = duration.toNanos();
+        return nanos == 0 ? 0 : subscriptionCount * 1_000_000_000.0 / nanos;
+    }
+
+    /**
+     * The number of distinct clients in the snapshot.
+     */
+    public long getExpectedServerCount() {
+        return expectedServerCount;
+    }
+
+    public long getActualServerCount() {
+        return actualServerCount;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * The sampled subscriptions whose client was missing from the match of a topic matching their filter.
+     */
+    public @NotNull ImmutableList<@NotNull Subscription> getUnmatchedSamples() {
+        return unmatchedSamples;
+    }
+
+    public boolean isVerified() {
+        return failedSubscriptionCount == 0 && actualServerCount == expectedServerCount && unmatchedSamples.isEmpty();
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return String.format(
+                "SnapshotReplayResult{subscriptions=%d, failed=%d, duration=%s, rate=%.1f subscriptions/s, " +
+                        "serverCount=%d/%d, unmatchedSamples=%d/%d %s}",
+                subscriptionCount,
+                failedSubscriptionCount,
+                duration,
+                getSubscriptionsPerSecond(),
+                actualServerCount,
+                expectedServerCount,
+                unmatchedSamples.size(),
+                sampleCount,
+                unmatchedSamples);
+    }
+}
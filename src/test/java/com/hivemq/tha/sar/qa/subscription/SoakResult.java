@@ -0,0 +1,185 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class SoakResult {
+
+    public static class Window {
+
+        private final @NotNull Duration offset;
+        private final @NotNull Duration duration;
+        private final @NotNull ImmutableMap<LoadGenerator.@NotNull Operation, LoadResult.@NotNull OperationResult>
+                operations;
+        private final @Nullable ResourceReport resources;
+
+        Window(
+                final @NotNull Duration offset,
+                final @NotNull Duration duration,
+                final @NotNull ImmutableMap<LoadGenerator.@NotNull Operation, LoadResult.@NotNull OperationResult>
+                        operations,
+                final @Nullable ResourceReport resources) {
+            this.offset = offset;
+            this.duration = duration;
+            this.operations = operations;
+            this.resources = resources;
+        }
+
+        /**
+         * The start of the window relative to the start of the soak.
+         */
+        public @NotNull Duration getOffset() {
+            return offset;
+        }
+
+        public @NotNull Duration getDuration() {
+            return duration;
+        }
+
+        public @NotNull ImmutableMap<LoadGenerator.@NotNull Operation, LoadResult.@NotNull OperationResult>
+        getOperations() {
+            return operations;
+        }
+
+        /**
+         * The server's resource usage during the window, or {@code null} if the server is not instrumented.
+         */
+        public @Nullable ResourceReport getResources() {
+            return resources;
+        }
+
+        public @NotNull LatencyHistogram getLatency() {
+            final LatencyHistogram latency = new LatencyHistogram();
+            operations.values().forEach(operation -> latency.add(operation.getLatency()));
+            return latency;
+        }
+
+        public long getRequestCount() {
+            return operations.values().stream().mapToLong(operation -> operation.getLatency().getCount()).sum();
+        }
+
+        public long getErrorCount() {
+            return operations.values().stream().mapToLong(LoadResult.OperationResult::getErrorCount).sum();
+        }
+
+        public long getTimeoutCount() {
+            return operations.values().stream().mapToLong(LoadResult.OperationResult::getTimeoutCount).sum();
+        }
+
+        /**
+         * Successful requests per second.
+         */
+        public double getThroughput() {
+            final long nanos = duration.toNanos();
+            return nanos == 0 ? 0 : (getRequestCount() - getErrorCount()) * 1_000_000_000.0 / nanos;
+        }
+
+        /**
+         * The RSS of the server at the end of the window, or -1 if the server is not instrumented.
+         */
+        public long getEndRssBytes() {
+            if (resources == null || resources.getSamples().isEmpty()) {
+                return -1;
+            }
+            return resources.getSamples().get(resources.getSamples().size() - 1).getRssBytes();
+        }
+
+        /**
+         * The lowest heap occupancy of the server after a garbage collection in this window, or -1 if the server is
+         * not instrumented or did not collect garbage in this window.
+         */
+        public long getMinPostGcHeapBytes() {
+            return resources == null ? -1 : resources.getMinPostGcHeapBytes();
+        }
+
+        @NotNull JSONObject toJson() {
+            final JSONObject json = new JSONObject();
+            json.put("offsetMillis", offset.toMillis());
+            json.put("durationMillis", duration.toMillis());
+            json.put("requests", getRequestCount());
+            json.put("throughput", getThroughput());
+            json.put("errors", getErrorCount());
+            json.put("timeouts", getTimeoutCount());
+            json.put("latency", getLatency().toJson(TimeUnit.MICROSECONDS));
+            final JSONObject jsonOperations = new JSONObject();
+            for (final Map.Entry<LoadGenerator.Operation, LoadResult.OperationResult> entry : operations.entrySet()) {
+                jsonOperations.put(entry.getKey().name().toLowerCase(), entry.getValue().toJson());
+            }
+            json.put("operations", jsonOperations);
+            if (resources != null) {
+                json.put("serverResources", resources.toJson());
+            }
+            return json;
+        }
+    }
+
+    private final int concurrency;
+    private final long preloadedSubscriptionCount;
+    private final @NotNull ImmutableList<@NotNull Window> windows;
+    private final @NotNull ImmutableList<@NotNull String> violations;
+
+    SoakResult(
+            final int concurrency,
+            final long preloadedSubscriptionCount,
+            final @NotNull ImmutableList<@NotNull Window> windows,
+            final @NotNull ImmutableList<@NotNull String> violations) {
+        this.concurrency = concurrency;
+        this.preloadedSubscriptionCount = preloadedSubscriptionCount;
+        this.windows = windows;
+        this.violations = violations;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * The number of subscriptions the server accepted before the soak started. The soak does not add any more.
+     */
+    public long getPreloadedSubscriptionCount() {
+        return preloadedSubscriptionCount;
+    }
+
+    /**
+     * All windows in order, including the warm-up windows.
+     */
+    public @NotNull ImmutableList<@NotNull Window> getWindows() {
+        return windows;
+    }
+
+    /**
+     * Describes every degradation criterion that the soak violated. Empty if the server held up.
+     */
+    public @NotNull ImmutableList<@NotNull String> getViolations() {
+        return violations;
+    }
+
+    public long getTimeoutCount() {
+        return windows.stream().mapToLong(Window::getTimeoutCount).sum();
+    }
+
+    public @NotNull JSONObject toJson() {
+        final JSONObject json = new JSONObject();
+        json.put("concurrency", concurrency);
+        json.put("preloadedSubscriptions", preloadedSubscriptionCount);
+        json.put("timeouts", getTimeoutCount());
+        json.put("violations", new JSONArray(violations));
+        final JSONArray jsonWindows = new JSONArray();
+        windows.forEach(window -> jsonWindows.put(window.toJson()));
+        json.put("windows", jsonWindows);
+        return json;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return toJson().toString();
+    }
+}
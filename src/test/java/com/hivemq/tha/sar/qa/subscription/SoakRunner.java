@@ -0,0 +1,440 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Keeps a fixed number of requests outstanding against one server for a long time, so that with more concurrency
+ * than server threads the requests permanently queue inside the server and the slow ones run into the request
+ * timeout. The run is cut into windows, and the late windows are compared with the early ones: the soak is reported
+ * as degraded if throughput drops, the 99th percentile latency or the timeout rate grows, or the server's heap after
+ * garbage collection still grows in the second half of the run.
+ * <p>
+ * The subscriptions are added before the run starts, and the run itself only reads them. The server stores every
+ * add, including duplicates, so adds during the run would grow the dataset with the run time and make the late
+ * windows slower and larger even on a healthy server.
+ * <p>
+ * Unlike {@link LoadGenerator}, the load is closed-loop: each worker sends its next request as soon as the previous
+ * one completed. Latency is therefore the time the server took, including its internal queueing, and stays
+ * comparable between windows however far the server falls behind.
+ */
+public class SoakRunner {
+
+    private static final long SEED = 42;
+    private static final int DEFAULT_CLIENT_COUNT = 100;
+    private static final int PRELOAD_CHUNK_SIZE = 1000;
+    private static final double NANOS_PER_HOUR = TimeUnit.HOURS.toNanos(1);
+
+    public static class Builder {
+
+        private @Nullable SubscriptionClient client;
+        private @Nullable SubscriptionServerExtension server;
+        private @Nullable TopicTreeGenerator topicTreeGenerator;
+        private @Nullable Duration duration;
+        private @NotNull Duration windowDuration = Duration.ofMinutes(1);
+        private int warmupWindows = 1;
+        private int concurrency = 8;
+        private int clientCount = DEFAULT_CLIENT_COUNT;
+        private int subscriptionCount = 10_000;
+        private final @NotNull Map<LoadGenerator.Operation, Integer> weights =
+                new EnumMap<>(LoadGenerator.Operation.class);
+        private double maxThroughputDrop = 0.2;
+        private double maxLatencyGrowth = 1.5;
+        private double maxTimeoutRateGrowth = 0.01;
+        private long maxHeapGrowthBytesPerHour = 64L * 1024 * 1024;
+
+        private Builder() {
+        }
+
+        public @NotNull Builder setClient(final @NotNull SubscriptionClient client) {
+            this.client = client;
+            return this;
+        }
+
+        /**
+         * The server the client talks to. If it is instrumented, each window reports its resource usage and the heap
+         * after garbage collection is checked for unbounded growth.
+         */
+        public @NotNull Builder setServer(final @NotNull SubscriptionServerExtension server) {
+            this.server = server;
+            return this;
+        }
+
+        public @NotNull Builder setTopicTreeGenerator(final @NotNull TopicTreeGenerator topicTreeGenerator) {
+            this.topicTreeGenerator = topicTreeGenerator;
+            return this;
+        }
+
+        public @NotNull Builder setDuration(final @NotNull Duration duration) {
+            this.duration = duration;
+            return this;
+        }
+
+        public @NotNull Builder setWindowDuration(final @NotNull Duration windowDuration) {
+            this.windowDuration = windowDuration;
+            return this;
+        }
+
+        /**
+         * The number of windows at the start that are reported but not compared, while the server's JIT and heap
+         * settle.
+         */
+        public @NotNull Builder setWarmupWindows(final int warmupWindows) {
+            this.warmupWindows = warmupWindows;
+            return this;
+        }
+
+        /**
+         * The number of requests kept outstanding. Set it above the server's thread count to saturate it.
+         */
+        public @NotNull Builder setConcurrency(final int concurrency) {
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        public @NotNull Builder setClientCount(final int clientCount) {
+            this.clientCount = clientCount;
+            return this;
+        }
+
+        /**
+         * The number of subscriptions added before the run starts.
+         */
+        public @NotNull Builder setSubscriptionCount(final int subscriptionCount) {
+            this.subscriptionCount = subscriptionCount;
+            return this;
+        }
+
+        /**
+         * Only matches and counts can be weighted, see the class comment for why the run does not add subscriptions.
+         */
+        public @NotNull Builder setWeight(final @NotNull LoadGenerator.Operation operation, final int weight) {
+            assert operation != LoadGenerator.Operation.ADD_SUBSCRIPTION : "The soak only adds before the run starts";
+            weights.put(operation, weight);
+            return this;
+        }
+
+        /**
+         * The tolerated relative drop of throughput in the last quarter of the compared windows against the first
+         * quarter.
+         */
+        public @NotNull Builder setMaxThroughputDrop(final double maxThroughputDrop) {
+            this.maxThroughputDrop = maxThroughputDrop;
+            return this;
+        }
+
+        /**
+         * The tolerated factor between the 99th percentile latency of the last and the first quarter.
+         */
+        public @NotNull Builder setMaxLatencyGrowth(final double maxLatencyGrowth) {
+            this.maxLatencyGrowth = maxLatencyGrowth;
+            return this;
+        }
+
+        /**
+         * The tolerated increase of the share of timed out requests between the first and the last quarter.
+         */
+        public @NotNull Builder setMaxTimeoutRateGrowth(final double maxTimeoutRateGrowth) {
+            this.maxTimeoutRateGrowth = maxTimeoutRateGrowth;
+            return this;
+        }
+
+        /**
+         * The tolerated growth rate of the heap after garbage collection over the second half of the compared
+         * windows. A server whose memory is bounded levels off well before then.
+         */
+        public @NotNull Builder setMaxHeapGrowthBytesPerHour(final long maxHeapGrowthBytesPerHour) {
+            this.maxHeapGrowthBytesPerHour = maxHeapGrowthBytesPerHour;
+            return this;
+        }
+
+        public @NotNull SoakRunner build() {
+            return new SoakRunner(this);
+        }
+    }
+
+    public static @NotNull Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Collects the requests completed during one window. The workers record into whichever recorder is current when
+     * a request completes.
+     */
+    private static class WindowRecorder {
+
+        private final long startNanoTime = System.nanoTime();
+        private final @NotNull Map<LoadGenerator.Operation, LatencyHistogram> latencies =
+                new EnumMap<>(LoadGenerator.Operation.class);
+        private final @NotNull Map<LoadGenerator.Operation, LongAdder> errors =
+                new EnumMap<>(LoadGenerator.Operation.class);
+        private final @NotNull Map<LoadGenerator.Operation, LongAdder> timeouts =
+                new EnumMap<>(LoadGenerator.Operation.class);
+
+        private WindowRecorder() {
+            for (final LoadGenerator.Operation operation : LoadGenerator.Operation.values()) {
+                latencies.put(operation, new LatencyHistogram());
+                errors.put(operation, new LongAdder());
+                timeouts.put(operation, new LongAdder());
+            }
+        }
+
+        private @NotNull SoakResult.Window toWindow(
+                final long soakStartNanoTime,
+                final long endNanoTime,
+                final @Nullable SubscriptionServerExtension server) {
+            final ImmutableMap.Builder<LoadGenerator.Operation, LoadResult.OperationResult> operations =
+                    ImmutableMap.builder();
+            for (final LoadGenerator.Operation operation : LoadGenerator.Operation.values()) {
+                if (latencies.get(operation).getCount() > 0) {
+                    operations.put(operation, new LoadResult.OperationResult(
+                            latencies.get(operation), errors.get(operation).sum(), timeouts.get(operation).sum()));
+                }
+            }
+            final ResourceReport resources = server == null ? null : server.getResourceReport();
+            return new SoakResult.Window(
+                    Duration.ofNanos(startNanoTime - soakStartNanoTime),
+                    Duration.ofNanos(endNanoTime - startNanoTime),
+                    operations.build(),
+                    resources == null ? null : resources.since(startNanoTime));
+        }
+    }
+
+    private final @NotNull SubscriptionClient client;
+    private final @Nullable SubscriptionServerExtension server;
+    private final @NotNull TopicTreeGenerator topicTreeGenerator;
+    private final @NotNull Duration duration;
+    private final @NotNull Duration windowDuration;
+    private final int warmupWindows;
+    private final int concurrency;
+    private final int clientCount;
+    private final int subscriptionCount;
+    private final @NotNull LoadGenerator.Operation @NotNull [] operationsByWeight;
+    private final double maxThroughputDrop;
+    private final double maxLatencyGrowth;
+    private final double maxTimeoutRateGrowth;
+    private final long maxHeapGrowthBytesPerHour;
+
+    private SoakRunner(final @NotNull Builder builder) {
+        assert builder.concurrency > 0 : "Concurrency must be > 0: " + builder.concurrency;
+        assert builder.clientCount > 0 : "Client count must be > 0: " + builder.clientCount;
+        assert builder.warmupWindows >= 0 : "Warm-up windows must be >= 0: " + builder.warmupWindows;
+        assert builder.subscriptionCount >= 0 : "Subscription count must be >= 0: " + builder.subscriptionCount;
+        this.client = Objects.requireNonNull(builder.client);
+        this.server = builder.server;
+        this.topicTreeGenerator = Objects.requireNonNull(builder.topicTreeGenerator);
+        this.duration = Objects.requireNonNull(builder.duration);
+        this.windowDuration = builder.windowDuration;
+        this.warmupWindows = builder.warmupWindows;
+        this.concurrency = builder.concurrency;
+        this.clientCount = builder.clientCount;
+        this.subscriptionCount = builder.subscriptionCount;
+        final Map<LoadGenerator.Operation, Integer> weights = builder.weights.isEmpty() ?
+                ImmutableMap.of(LoadGenerator.Operation.GET_MATCHING_SUBSCRIBERS, 1) : builder.weights;
+        this.operationsByWeight = weights.entrySet()
+                .stream()
+                .flatMap(entry -> Collections.nCopies(entry.getValue(), entry.getKey()).stream())
+                .toArray(LoadGenerator.Operation[]::new);
+        assert operationsByWeight.length > 0 : "At least one operation must have a weight > 0: " + weights;
+        this.maxThroughputDrop = builder.maxThroughputDrop;
+        this.maxLatencyGrowth = builder.maxLatencyGrowth;
+        this.maxTimeoutRateGrowth = builder.maxTimeoutRateGrowth;
+        this.maxHeapGrowthBytesPerHour = builder.maxHeapGrowthBytesPerHour;
+    }
+
+    public @NotNull SoakResult run() throws InterruptedException {
+        return run(window -> {});
+    }
+
+    /**
+     * Reports each window as soon as it is complete, so hours-long runs can be followed while they are running.
+     */
+    public @NotNull SoakResult run(final @NotNull Consumer<SoakResult.@NotNull Window> windowListener)
+            throws InterruptedException {
+        final BulkAddResult preload = client.addSubscriptions(
+                topicTreeGenerator.nextSubscriptions(subscriptionCount, clientCount), PRELOAD_CHUNK_SIZE);
+        final long preloadedSubscriptionCount =
+                preload.getSubscriptionCount() - preload.getFailedSubscriptions().size();
+        final long start = System.nanoTime();
+        final long end = start + duration.toNanos();
+        final AtomicReference<WindowRecorder> recorder = new AtomicReference<>(new WindowRecorder());
+        final ExecutorService workers = Executors.newFixedThreadPool(concurrency, runnable -> {
+            final Thread thread = new Thread(runnable, "soak-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < concurrency; i++) {
+            final Random random = new Random(SEED + i);
+            workers.execute(() -> {
+                while (System.nanoTime() - end < 0 && !Thread.currentThread().isInterrupted()) {
+                    issue(operationsByWeight[random.nextInt(operationsByWeight.length)], recorder);
+                }
+            });
+        }
+        final List<SoakResult.Window> windows = new ArrayList<>();
+        try {
+            long windowEnd = start;
+            while (windowEnd - end < 0) {
+                final long nextWindowEnd = windowEnd + windowDuration.toNanos();
+                windowEnd = nextWindowEnd - end > 0 ? end : nextWindowEnd;
+                final long remaining = windowEnd - System.nanoTime();
+                if (remaining > 0) {
+                    TimeUnit.NANOSECONDS.sleep(remaining);
+                }
+                final WindowRecorder completed = recorder.getAndSet(new WindowRecorder());
+                final SoakResult.Window window = completed.toWindow(start, System.nanoTime(), server);
+                windows.add(window);
+                windowListener.accept(window);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        // Requests still outstanding when the soak ends are not part of any window.
+        workers.awaitTermination(windowDuration.toNanos(), TimeUnit.NANOSECONDS);
+        final ImmutableList<SoakResult.Window> allWindows = ImmutableList.copyOf(windows);
+        return new SoakResult(concurrency, preloadedSubscriptionCount, allWindows, findViolations(allWindows));
+    }
+
+    private void issue(
+            final @NotNull LoadGenerator.Operation operation,
+            final @NotNull AtomicReference<WindowRecorder> recorder) {
+        final long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            switch (operation) {
+                case GET_MATCHING_SUBSCRIBERS:
+                    client.getMatchingSubscribers(topicTreeGenerator.nextTopic());
+                    break;
+                case GET_SUBSCRIPTION_COUNT:
+                    client.getSubscriptionCount();
+                    break;
+                default:
+                    throw new IllegalStateException("Unsupported operation: " + operation);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (final IOException | RuntimeException e) {
+            failure = e;
+        }
+        final WindowRecorder current = recorder.get();
+        current.latencies.get(operation).recordNanos(System.nanoTime() - start);
+        if (failure != null) {
+            current.errors.get(operation).increment();
+            if (LoadGenerator.isTimeout(failure)) {
+                current.timeouts.get(operation).increment();
+            }
+        }
+    }
+
+    private @NotNull ImmutableList<@NotNull String> findViolations(
+            final @NotNull ImmutableList<SoakResult.@NotNull Window> windows) {
+        final List<SoakResult.Window> compared =
+                windows.subList(Math.min(warmupWindows, windows.size()), windows.size());
+        final ImmutableList.Builder<String> violations = ImmutableList.builder();
+        if (compared.size() < 2) {
+            return violations.build();
+        }
+        final int quarter = Math.max(1, compared.size() / 4);
+        final List<SoakResult.Window> first = compared.subList(0, quarter);
+        final List<SoakResult.Window> last = compared.subList(compared.size() - quarter, compared.size());
+
+        final double firstThroughput = throughput(first);
+        final double lastThroughput = throughput(last);
+        if (lastThroughput < firstThroughput * (1 - maxThroughputDrop)) {
+            violations.add(String.format("Throughput dropped from %.1f/s to %.1f/s", firstThroughput, lastThroughput));
+        }
+        final long firstP99 = latency(first).getValueAtPercentileNanos(99);
+        final long lastP99 = latency(last).getValueAtPercentileNanos(99);
+        if (lastP99 > firstP99 * maxLatencyGrowth) {
+            violations.add(String.format("p99 latency grew from %.1f ms to %.1f ms", firstP99 / 1e6, lastP99 / 1e6));
+        }
+        final double firstTimeoutRate = timeoutRate(first);
+        final double lastTimeoutRate = timeoutRate(last);
+        if (lastTimeoutRate > firstTimeoutRate + maxTimeoutRateGrowth) {
+            violations.add(String.format(
+                    "Timeout rate grew from %.2f%% to %.2f%%", firstTimeoutRate * 100, lastTimeoutRate * 100));
+        }
+        final Double heapGrowth = heapGrowthBytesPerHour(compared.subList(compared.size() / 2, compared.size()));
+        if (heapGrowth != null && heapGrowth > maxHeapGrowthBytesPerHour) {
+            violations.add(String.format(
+                    "Server heap after GC still grows by %.1f MiB/h in the second half", heapGrowth / (1024 * 1024)));
+        }
+        return violations.build();
+    }
+
+    private static double throughput(final @NotNull List<SoakResult.@NotNull Window> windows) {
+        long successes = 0;
+        long nanos = 0;
+        for (final SoakResult.Window window : windows) {
+            successes += window.getRequestCount() - window.getErrorCount();
+            nanos += window.getDuration().toNanos();
+        }
+        return nanos == 0 ? 0 : successes * 1_000_000_000.0 / nanos;
+    }
+
+    private static @NotNull LatencyHistogram latency(final @NotNull List<SoakResult.@NotNull Window> windows) {
+        final LatencyHistogram latency = new LatencyHistogram();
+        windows.forEach(window -> latency.add(window.getLatency()));
+        return latency;
+    }
+
+    private static double timeoutRate(final @NotNull List<SoakResult.@NotNull Window> windows) {
+        long requests = 0;
+        long timeouts = 0;
+        for (final SoakResult.Window window : windows) {
+            requests += window.getRequestCount();
+            timeouts += window.getTimeoutCount();
+        }
+        return requests == 0 ? 0 : (double) timeouts / requests;
+    }
+
+    /**
+     * The least squares slope of the lowest heap after GC of each window over time, or {@code null} without enough
+     * samples. The lowest value follows the live data, while the others also include garbage that was promoted and
+     * waits for the next old generation collection.
+     */
+    private static @Nullable Double heapGrowthBytesPerHour(final @NotNull List<SoakResult.@NotNull Window> windows) {
+        final List<double[]> points = new ArrayList<>();
+        for (final SoakResult.Window window : windows) {
+            if (window.getMinPostGcHeapBytes() >= 0) {
+                final double hours = window.getOffset().plus(window.getDuration()).toNanos() / NANOS_PER_HOUR;
+                points.add(new double[]{hours, window.getMinPostGcHeapBytes()});
+            }
+        }
+        if (points.size() < 2) {
+            return null;
+        }
+        double meanX = 0;
+        double meanY = 0;
+        for (final double[] point : points) {
+            meanX += point[0] / points.size();
+            meanY += point[1] / points.size();
+        }
+        double covariance = 0;
+        double variance = 0;
+        for (final double[] point : points) {
+            covariance += (point[0] - meanX) * (point[1] - meanY);
+            variance += (point[0] - meanX) * (point[0] - meanX);
+        }
+        return variance == 0 ? null : covariance / variance;
+    }
+}
@@ -0,0 +1,86 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONException;
+import org.json.JSONTokener;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+class SubscribersStreamReader {
+
+    private final @NotNull String subscribersKey;
+
+    SubscribersStreamReader(final @NotNull String subscribersKey) {
+        this.subscribersKey = subscribersKey;
+    }
+
+    /**
+     * Reads a response object of the form {"subscribers": [...]} token by token, so only the subscriber that is
+     * currently passed to the consumer is held on the heap. Other keys are skipped.
+     */
+    void read(final @NotNull InputStream body, final @NotNull Consumer<@NotNull String> subscriberConsumer)
+            throws IOException {
+        final JSONTokener tokener =
+                new JSONTokener(new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8)));
+        try {
+            expect(tokener, '{');
+            if (tokener.nextClean() == '}') {
+                return;
+            }
+            tokener.back();
+            while (true) {
+                final Object key = tokener.nextValue();
+                expect(tokener, ':');
+                if (subscribersKey.equals(key)) {
+                    readSubscribers(tokener, subscriberConsumer);
+                } else {
+                    tokener.nextValue();
+                }
+                final char next = tokener.nextClean();
+                if (next == '}') {
+                    return;
+                }
+                if (next != ',') {
+                    throw tokener.syntaxError("Expected ',' or '}'");
+                }
+            }
+        } catch (final JSONException e) {
+            throw new IOException("Malformed subscribers response: " + e.getMessage(), e);
+        }
+    }
+
+    private static void readSubscribers(
+            final @NotNull JSONTokener tokener, final @NotNull Consumer<@NotNull String> subscriberConsumer) {
+        expect(tokener, '[');
+        if (tokener.nextClean() == ']') {
+            return;
+        }
+        tokener.back();
+        while (true) {
+            final Object subscriber = tokener.nextValue();
+            if (!(subscriber instanceof String)) {
+                throw tokener.syntaxError("Expected a string subscriber but got " + subscriber);
+            }
+            subscriberConsumer.accept((String) subscriber);
+            final char next = tokener.nextClean();
+            if (next == ']') {
+                return;
+            }
+            if (next != ',') {
+                throw tokener.syntaxError("Expected ',' or ']'");
+            }
+        }
+    }
+
+    private static void expect(final @NotNull JSONTokener tokener, final char expected) {
+        final char actual = tokener.nextClean();
+        if (actual != expected) {
+            throw tokener.syntaxError("Expected '" + expected + "' but got '" + actual + "'");
+        }
+    }
+}
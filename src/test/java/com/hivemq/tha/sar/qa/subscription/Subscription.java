@@ -0,0 +1,47 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+
+public class Subscription {
+
+    private final @NotNull String topicFilter;
+    private final @NotNull String clientId;
+
+    public Subscription(final @NotNull String topicFilter, final @NotNull String clientId) {
+        this.topicFilter = topicFilter;
+        this.clientId = clientId;
+    }
+
+    public @NotNull String getTopicFilter() {
+        return topicFilter;
+    }
+
+    public @NotNull String getClientId() {
+        return clientId;
+    }
+
+    @Override
+    public boolean equals(final @Nullable Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Subscription)) {
+            return false;
+        }
+        final Subscription that = (Subscription) o;
+        return topicFilter.equals(that.topicFilter) && clientId.equals(that.clientId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(topicFilter, clientId);
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "Subscription{topicFilter='" + topicFilter + "', clientId='" + clientId + "'}";
+    }
+}
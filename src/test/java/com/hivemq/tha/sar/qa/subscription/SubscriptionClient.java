@@ -1,20 +1,44 @@
 package com.hivemq.tha.sar.qa.subscription;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.io.CountingInputStream;
+import com.hivemq.tha.sar.qa.subscription.SubscriptionClientMetrics.Endpoint;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
-public class SubscriptionClient {
+public class SubscriptionClient implements SubscriptionStore {
 
     private static final @NotNull String SERVER_URI_BASE = "http://localhost:";
     private static final @NotNull String SUBSCRIPTIONS_RESOURCE = "/subscriptions";
@@ -24,89 +48,841 @@ public class SubscriptionClient {
     private static final @NotNull String TOPIC_FILTER_KEY = "topicFilter";
     private static final @NotNull String CLIENT_ID_KEY = "clientId";
     private static final @NotNull String SUBSCRIBERS_KEY = "subscribers";
+    private static final @NotNull String SUBSCRIPTIONS_KEY = "subscriptions";
     private static final int HTTP_STATUS_CODE_OK = 200;
+    /**
+     * The status codes with which a server rejects a batch body as such, rather than failing this one request.
+     */
+    private static final @NotNull ImmutableSet<Integer> BATCH_UNSUPPORTED_STATUS_CODES =
+            ImmutableSet.of(400, 404, 405, 415, 422);
+    private static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 64;
+    private static final @NotNull SubscribersStreamReader SUBSCRIBERS_STREAM_READER =
+            new SubscribersStreamReader(SUBSCRIBERS_KEY);
+
+    public static class Builder {
+
+        private @Nullable Integer port;
+        private @Nullable Duration requestTimeout;
+        private int maxInFlightRequests = DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+        private @Nullable MatchCache matchCache;
+        private @Nullable MatchCoalescer matchCoalescer;
+        private @Nullable SubscriptionStore mirror;
+        private @NotNull SubscriptionClientMetrics metrics = SubscriptionClientMetrics.noOp();
+        private @Nullable RetryPolicy retryPolicy;
+        private @Nullable HedgingPolicy hedgingPolicy;
+        private @Nullable CircuitBreaker circuitBreaker;
+        private @Nullable HttpClient.Version httpVersion;
+        private @Nullable Duration connectTimeout;
+        private @Nullable Executor executor;
+
+        private Builder() {
+        }
+
+        public @NotNull Builder setPort(final int port) {
+            this.port = port;
+            return this;
+        }
+
+        public @NotNull Builder setRequestTimeout(final @NotNull Duration requestTimeout) {
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
+        /**
+         * Also bounds the number of connections with HTTP/1.1, which sends one request per connection at a time and
+         * keeps idle connections alive for reuse. The JVM-wide keep-alive pool is configured through the
+         * {@code jdk.httpclient.connectionPoolSize} and {@code jdk.httpclient.keepalive.timeout} system properties.
+         */
+        public @NotNull Builder setMaxInFlightRequests(final int maxInFlightRequests) {
+            this.maxInFlightRequests = maxInFlightRequests;
+            return this;
+        }
+
+        public @NotNull Builder setMatchCache(final @NotNull MatchCache matchCache) {
+            this.matchCache = matchCache;
+            return this;
+        }
+
+        public @NotNull Builder setMatchCoalescer(final @NotNull MatchCoalescer matchCoalescer) {
+            this.matchCoalescer = matchCoalescer;
+            return this;
+        }
+
+        public @NotNull Builder setMirror(final @NotNull SubscriptionStore mirror) {
+            this.mirror = mirror;
+            return this;
+        }
+
+        public @NotNull Builder setMetrics(final @NotNull SubscriptionClientMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Retries failed requests. Each retry of an asynchronous request keeps its in-flight slot, so retries do not
+         * exceed the maximum number of requests in flight.
+         */
+        public @NotNull Builder setRetryPolicy(final @NotNull RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * Hedges slow match requests. A hedged request is only sent if an in-flight slot is free.
+         */
+        public @NotNull Builder setHedgingPolicy(final @NotNull HedgingPolicy hedgingPolicy) {
+            this.hedgingPolicy = hedgingPolicy;
+            return this;
+        }
+
+        /**
+         * Guards every request, including retries and hedged requests.
+         */
+        public @NotNull Builder setCircuitBreaker(final @NotNull CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+            return this;
+        }
+
+        /**
+         * If not set, the {@link HttpClient} default is used, which is HTTP/2 and attempts an upgrade on every new
+         * plain-text connection before falling back to HTTP/1.1. With HTTP/2, all requests are multiplexed over a
+         * single connection.
+         */
+        public @NotNull Builder setHttpVersion(final @NotNull HttpClient.Version httpVersion) {
+            this.httpVersion = httpVersion;
+            return this;
+        }
+
+        /**
+         * Limits establishing a connection, separately from the request timeout, which limits waiting for a
+         * response. If not set, connecting is only limited by the operating system.
+         */
+        public @NotNull Builder setConnectTimeout(final @NotNull Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        /**
+         * Runs the HTTP client's response handling and the async stages that depend on it. If not set, the
+         * {@link HttpClient} uses an unbounded cached thread pool.
+         *
+         * @see SubscriptionClient#newVirtualThreadExecutor()
+         */
+        public @NotNull Builder setExecutor(final @NotNull Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public @NotNull SubscriptionClient build() throws URISyntaxException {
+            final HttpClient.Builder httpClientBuilder = HttpClient.newBuilder();
+            if (httpVersion != null) {
+                httpClientBuilder.version(httpVersion);
+            }
+            if (connectTimeout != null) {
+                httpClientBuilder.connectTimeout(connectTimeout);
+            }
+            if (executor != null) {
+                httpClientBuilder.executor(executor);
+            }
+            return new SubscriptionClient(
+                    httpClientBuilder.build(),
+                    Objects.requireNonNull(port),
+                    Objects.requireNonNull(requestTimeout),
+                    maxInFlightRequests,
+                    matchCache,
+                    matchCoalescer,
+                    mirror,
+                    metrics,
+                    retryPolicy,
+                    hedgingPolicy,
+                    circuitBreaker);
+        }
+    }
+
+    private interface MatchRequest {
+
+        @NotNull ImmutableList<@NotNull String> send() throws IOException, InterruptedException;
+    }
+
+    public static @NotNull Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns an executor that starts a virtual thread per task, or {@code null} if the JDK does not support virtual
+     * threads. It is looked up reflectively, because this project compiles for Java 11.
+     */
+    public static @Nullable ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (final NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            // Virtual threads are a preview feature on Java 19 and 20 and do not exist before.
+            return null;
+        }
+    }
 
     private final @NotNull HttpClient client;
     private final @NotNull URI addSubscriptionUri;
     private final @NotNull URI getMatchingSubscribersUri;
     private final @NotNull URI getSubscriptionCountUri;
     private final @NotNull Duration requestTimeout;
+    private final @NotNull Semaphore inFlightRequests;
+    private final @Nullable MatchCache matchCache;
+    private final @Nullable MatchCoalescer matchCoalescer;
+    private final @Nullable SubscriptionStore mirror;
+    private final @NotNull SubscriptionClientMetrics metrics;
+    private final @Nullable RetryPolicy retryPolicy;
+    private final @Nullable HedgingPolicy hedgingPolicy;
+    private final @Nullable CircuitBreaker circuitBreaker;
+
+    private volatile @Nullable Boolean batchSupported;
 
     public SubscriptionClient(final int serverPort, final @NotNull Duration requestTimeout) throws URISyntaxException {
+        this(
+                HttpClient.newHttpClient(),
+                serverPort,
+                requestTimeout,
+                DEFAULT_MAX_IN_FLIGHT_REQUESTS,
+                null,
+                null,
+                null,
+                SubscriptionClientMetrics.noOp(),
+                null,
+                null,
+                null);
+    }
+
+    private SubscriptionClient(
+            final @NotNull HttpClient client,
+            final int serverPort,
+            final @NotNull Duration requestTimeout,
+            final int maxInFlightRequests,
+            final @Nullable MatchCache matchCache,
+            final @Nullable MatchCoalescer matchCoalescer,
+            final @Nullable SubscriptionStore mirror,
+            final @NotNull SubscriptionClientMetrics metrics,
+            final @Nullable RetryPolicy retryPolicy,
+            final @Nullable HedgingPolicy hedgingPolicy,
+            final @Nullable CircuitBreaker circuitBreaker) throws URISyntaxException {
         assert requestTimeout.toMillis() >= 0 : "Request timeout must be >= 0: " + requestTimeout;
-        this.client = HttpClient.newHttpClient();
+        assert maxInFlightRequests > 0 : "Max in-flight requests must be > 0: " + maxInFlightRequests;
+        this.client = client;
         final String resourceUri = SERVER_URI_BASE + serverPort + SUBSCRIPTIONS_RESOURCE;
         this.addSubscriptionUri = new URI(resourceUri);
         this.getMatchingSubscribersUri = new URI(resourceUri + MATCH_RESOURCE);
         this.getSubscriptionCountUri = new URI(resourceUri);
         this.requestTimeout = requestTimeout;
+        this.inFlightRequests = new Semaphore(maxInFlightRequests);
+        this.matchCache = matchCache;
+        this.matchCoalescer = matchCoalescer;
+        this.mirror = mirror;
+        this.metrics = metrics;
+        this.retryPolicy = retryPolicy;
+        this.hedgingPolicy = hedgingPolicy;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public @Nullable MatchCache getMatchCache() {
+        return matchCache;
+    }
+
+    public @Nullable MatchCoalescer getMatchCoalescer() {
+        return matchCoalescer;
+    }
+
+    public @Nullable SubscriptionStore getMirror() {
+        return mirror;
+    }
+
+    public @NotNull SubscriptionClientMetrics getMetrics() {
+        return metrics;
     }
 
+    public @Nullable CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    @Override
     public void addSubscription(final @NotNull String topicFilter, final @NotNull String clientId)
             throws IOException, InterruptedException {
-        final JSONObject body = new JSONObject();
-        body.put(TOPIC_FILTER_KEY, topicFilter);
-        body.put(CLIENT_ID_KEY, clientId);
-        sendPostRequest(addSubscriptionUri, body.toString(), response -> {});
+        try {
+            send(Endpoint.ADD_SUBSCRIPTION, addSubscriptionRequest(topicFilter, clientId), response -> null);
+        } finally {
+            invalidateMatches(topicFilter);
+        }
+        mirrorSubscription(topicFilter, clientId);
     }
 
+    @Override
     public @NotNull ImmutableList<@NotNull String> getMatchingSubscribers(final @NotNull String topic)
             throws IOException, InterruptedException {
-        final ImmutableList.Builder<String> subscribersBuilder = ImmutableList.builder();
-        final JSONObject body = new JSONObject();
-        body.put(TOPIC_KEY, topic);
-        sendPostRequest(getMatchingSubscribersUri, body.toString(), response -> {
-            assert response != null;
-            for (final Object jsonSubscriber : response.getJSONArray(SUBSCRIBERS_KEY)) {
-                assert jsonSubscriber instanceof String : jsonSubscriber.getClass().getSimpleName();
-                subscribersBuilder.add((String) jsonSubscriber);
+        if (hedgingPolicy != null) {
+            return getMatchingSubscribersCached(topic, () -> await(sendMatchAsync(topic)));
+        }
+        return getMatchingSubscribersCached(
+                topic,
+                () -> send(
+                        Endpoint.GET_MATCHING_SUBSCRIBERS,
+                        getMatchingSubscribersRequest(topic),
+                        SubscriptionClient::toSubscribers));
+    }
+
+    /**
+     * Like {@link #getMatchingSubscribers(String)}, but parses the response incrementally instead of materializing
+     * the whole body and its JSON tree first, which keeps large wildcard matches off the heap.
+     */
+    public @NotNull ImmutableList<@NotNull String> getMatchingSubscribersStreaming(final @NotNull String topic)
+            throws IOException, InterruptedException {
+        return getMatchingSubscribersCached(topic, () -> {
+            final ImmutableList.Builder<String> subscribersBuilder = ImmutableList.builder();
+            getMatchingSubscribers(topic, subscribersBuilder::add);
+            return subscribersBuilder.build();
+        });
+    }
+
+    /**
+     * Streams each matching subscriber to the consumer while the response is read. The match cache, the match
+     * coalescer and the retry, hedging and circuit breaker policies are bypassed.
+     * <p>
+     * For metrics, the exchange ends when the response headers are received, and reading the body counts as
+     * decoding.
+     */
+    public void getMatchingSubscribers(
+            final @NotNull String topic, final @NotNull Consumer<@NotNull String> subscriberConsumer)
+            throws IOException, InterruptedException {
+        final Endpoint endpoint = Endpoint.GET_MATCHING_SUBSCRIBERS;
+        final HttpRequest request = getMatchingSubscribersRequest(topic);
+        metrics.onRequestSent(endpoint, getRequestBytes(request));
+        final long start = System.nanoTime();
+        final HttpResponse<InputStream> response;
+        try {
+            response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (final IOException e) {
+            metrics.onRequestFailed(endpoint, System.nanoTime() - start, e);
+            throw e;
+        }
+        final long exchangeNanos = System.nanoTime() - start;
+        try (final CountingInputStream body = new CountingInputStream(response.body())) {
+            if (response.statusCode() != HTTP_STATUS_CODE_OK) {
+                final String errorBody = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+                metrics.onResponseReceived(endpoint, response.statusCode(), exchangeNanos, body.getCount());
+                throw new HttpStatusException(response.statusCode(), errorBody);
+            }
+            final long decodeStart = System.nanoTime();
+            try {
+                SUBSCRIBERS_STREAM_READER.read(body, subscriberConsumer);
+            } catch (final IOException e) {
+                // Draining the rest of a malformed body lets the connection be reused.
+                try {
+                    body.transferTo(OutputStream.nullOutputStream());
+                } catch (final IOException drainException) {
+                    e.addSuppressed(drainException);
+                }
+                metrics.onResponseReceived(endpoint, response.statusCode(), exchangeNanos, body.getCount());
+                metrics.onRequestFailed(endpoint, System.nanoTime() - start, e);
+                throw e;
             }
+            final long decodeNanos = System.nanoTime() - decodeStart;
+            metrics.onResponseReceived(endpoint, response.statusCode(), exchangeNanos, body.getCount());
+            metrics.onResponseDecoded(endpoint, decodeNanos);
+        }
+    }
+
+    @Override
+    public long getSubscriptionCount() throws IOException, InterruptedException {
+        return send(
+                Endpoint.GET_SUBSCRIPTION_COUNT,
+                getRequest(Endpoint.GET_SUBSCRIPTION_COUNT, getSubscriptionCountUri),
+                SubscriptionClient::toSubscriptionCount);
+    }
+
+    /**
+     * Blocks while the maximum number of requests is in flight, so a fast producer is throttled to the pace of
+     * the server instead of queueing an unbounded number of requests.
+     */
+    public @NotNull CompletableFuture<Void> addSubscriptionAsync(
+            final @NotNull String topicFilter, final @NotNull String clientId) throws InterruptedException {
+        return this.<Void>sendAsync(
+                        Endpoint.ADD_SUBSCRIPTION,
+                        addSubscriptionRequest(topicFilter, clientId),
+                        response -> null)
+                .whenComplete((response, throwable) -> invalidateMatches(topicFilter))
+                .thenRun(() -> mirrorSubscription(topicFilter, clientId));
+    }
+
+    public @NotNull CompletableFuture<ImmutableList<@NotNull String>> getMatchingSubscribersAsync(
+            final @NotNull String topic) throws InterruptedException {
+        if (matchCache == null) {
+            return fetchMatchingSubscribersAsync(topic);
+        }
+        final ImmutableList<String> cachedSubscribers = matchCache.get(topic);
+        if (cachedSubscribers != null) {
+            return CompletableFuture.completedFuture(cachedSubscribers);
+        }
+        final long generation = matchCache.getGeneration();
+        return fetchMatchingSubscribersAsync(topic).thenApply(subscribers -> {
+            matchCache.put(topic, subscribers, generation);
+            return subscribers;
         });
+    }
+
+    public @NotNull CompletableFuture<Long> getSubscriptionCountAsync() throws InterruptedException {
+        return sendAsync(
+                Endpoint.GET_SUBSCRIPTION_COUNT,
+                getRequest(Endpoint.GET_SUBSCRIPTION_COUNT, getSubscriptionCountUri),
+                SubscriptionClient::toSubscriptionCount);
+    }
+
+    public @NotNull BulkAddResult addSubscriptions(
+            final @NotNull Collection<@NotNull Subscription> subscriptions, final int chunkSize)
+            throws InterruptedException {
+        return addSubscriptions(subscriptions, chunkSize, chunkReport -> {});
+    }
+
+    /**
+     * Sends each chunk as one batch body. If the server rejects batch bodies, the chunk and all following chunks
+     * are sent as pipelined single requests instead. If a batch fails for another reason, only its chunk is sent as
+     * single requests.
+     */
+    public @NotNull BulkAddResult addSubscriptions(
+            final @NotNull Collection<@NotNull Subscription> subscriptions,
+            final int chunkSize,
+            final @NotNull Consumer<BulkAddResult.@NotNull ChunkReport> chunkListener) throws InterruptedException {
+        assert chunkSize > 0 : "Chunk size must be > 0: " + chunkSize;
+        final long start = System.nanoTime();
+        final ImmutableList.Builder<BulkAddResult.ChunkReport> chunkReports = ImmutableList.builder();
+        int index = 0;
+        for (final List<Subscription> chunk : Iterables.partition(subscriptions, chunkSize)) {
+            final BulkAddResult.ChunkReport chunkReport = addChunk(index++, chunk);
+            chunkListener.accept(chunkReport);
+            chunkReports.add(chunkReport);
+        }
+        return new BulkAddResult(chunkReports.build(), Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private @NotNull BulkAddResult.ChunkReport addChunk(
+            final int index, final @NotNull List<@NotNull Subscription> chunk) throws InterruptedException {
+        final long start = System.nanoTime();
+        if (batchSupported != Boolean.FALSE && tryAddBatch(chunk)) {
+            return new BulkAddResult.ChunkReport(
+                    index, chunk.size(), true, Duration.ofNanos(System.nanoTime() - start), ImmutableList.of());
+        }
+        final List<CompletableFuture<Void>> futures = new ArrayList<>(chunk.size());
+        for (final Subscription subscription : chunk) {
+            futures.add(addSubscriptionAsync(subscription.getTopicFilter(), subscription.getClientId()));
+        }
+        final ImmutableList.Builder<Subscription> failedSubscriptions = ImmutableList.builder();
+        for (int i = 0; i < futures.size(); i++) {
+            if (futures.get(i).handle((response, throwable) -> throwable != null).join()) {
+                failedSubscriptions.add(chunk.get(i));
+            }
+        }
+        return new BulkAddResult.ChunkReport(
+                index, chunk.size(), false, Duration.ofNanos(System.nanoTime() - start), failedSubscriptions.build());
+    }
+
+    private boolean tryAddBatch(final @NotNull List<@NotNull Subscription> chunk) throws InterruptedException {
+        final long encodeStart = System.nanoTime();
+        final JsonBodyEncoder body = JsonBodyEncoder.get().beginObject().beginArray(SUBSCRIPTIONS_KEY);
+        for (final Subscription subscription : chunk) {
+            body.beginObject()
+                    .field(TOPIC_FILTER_KEY, subscription.getTopicFilter())
+                    .field(CLIENT_ID_KEY, subscription.getClientId())
+                    .endObject();
+        }
+        body.endArray().endObject();
+        final HttpRequest request =
+                postRequest(Endpoint.ADD_SUBSCRIPTIONS_BATCH, addSubscriptionUri, body, encodeStart);
+        final HttpResponse<byte[]> response;
+        try {
+            response = exchange(Endpoint.ADD_SUBSCRIPTIONS_BATCH, request);
+        } catch (final IOException e) {
+            return false;
+        }
+        if (response.statusCode() == HTTP_STATUS_CODE_OK) {
+            batchSupported = true;
+            for (final Subscription subscription : chunk) {
+                invalidateMatches(subscription.getTopicFilter());
+                mirrorSubscription(subscription.getTopicFilter(), subscription.getClientId());
+            }
+            return true;
+        }
+        // Other status codes, for example from a saturated server, only make this chunk fall back.
+        if (batchSupported == null && BATCH_UNSUPPORTED_STATUS_CODES.contains(response.statusCode())) {
+            batchSupported = false;
+        }
+        return false;
+    }
+
+    private @NotNull ImmutableList<@NotNull String> getMatchingSubscribersCached(
+            final @NotNull String topic, final @NotNull MatchRequest matchRequest)
+            throws IOException, InterruptedException {
+        if (matchCache == null) {
+            return fetchMatchingSubscribers(topic, matchRequest);
+        }
+        final ImmutableList<String> cachedSubscribers = matchCache.get(topic);
+        if (cachedSubscribers != null) {
+            return cachedSubscribers;
+        }
+        final long generation = matchCache.getGeneration();
+        final ImmutableList<String> subscribers = fetchMatchingSubscribers(topic, matchRequest);
+        matchCache.put(topic, subscribers, generation);
+        return subscribers;
+    }
+
+    private @NotNull ImmutableList<@NotNull String> fetchMatchingSubscribers(
+            final @NotNull String topic, final @NotNull MatchRequest matchRequest)
+            throws IOException, InterruptedException {
+        if (matchCoalescer == null) {
+            return matchRequest.send();
+        }
+        return matchCoalescer.coalesce(topic, matchRequest::send);
+    }
+
+    private @NotNull CompletableFuture<ImmutableList<@NotNull String>> fetchMatchingSubscribersAsync(
+            final @NotNull String topic) throws InterruptedException {
+        final MatchCoalescer.AsyncCall matchRequest = () -> sendMatchAsync(topic);
+        if (matchCoalescer == null) {
+            return matchRequest.send();
+        }
+        return matchCoalescer.coalesceAsync(topic, matchRequest);
+    }
+
+    private void invalidateMatches(final @NotNull String topicFilter) {
+        if (matchCache != null) {
+            matchCache.invalidateMatching(topicFilter);
+        }
+        if (matchCoalescer != null) {
+            matchCoalescer.detachMatching(topicFilter);
+        }
+    }
+
+    private void mirrorSubscription(final @NotNull String topicFilter, final @NotNull String clientId) {
+        if (mirror != null) {
+            try {
+                mirror.addSubscription(topicFilter, clientId);
+            } catch (final IOException | InterruptedException e) {
+                throw new IllegalStateException("Mirror must be an in-process store: " + mirror, e);
+            }
+        }
+    }
+
+    private static @NotNull ImmutableList<@NotNull String> toSubscribers(final @Nullable JSONObject response) {
+        assert response != null;
+        final ImmutableList.Builder<String> subscribersBuilder = ImmutableList.builder();
+        for (final Object jsonSubscriber : response.getJSONArray(SUBSCRIBERS_KEY)) {
+            assert jsonSubscriber instanceof String : jsonSubscriber.getClass().getSimpleName();
+            subscribersBuilder.add((String) jsonSubscriber);
+        }
         return subscribersBuilder.build();
     }
 
-    public long getSubscriptionCount() throws IOException, InterruptedException {
-        final long[] count = new long[1];
-        sendGetRequest(getSubscriptionCountUri, response -> count[0] = response.getLong(SUBSCRIPTION_COUNT_KEY));
-        return count[0];
+    private static long toSubscriptionCount(final @Nullable JSONObject response) {
+        assert response != null;
+        return response.getLong(SUBSCRIPTION_COUNT_KEY);
     }
 
-    private void sendPostRequest(
-            final @NotNull URI uri,
-            final @NotNull String body,
-            final @NotNull Consumer<@Nullable JSONObject> responseHandler)
+    /**
+     * Sends the request again on failures the retry policy retries.
+     */
+    private <T> T send(
+            final @NotNull Endpoint endpoint,
+            final @NotNull HttpRequest request,
+            final @NotNull Function<@Nullable JSONObject, T> responseHandler) throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return decode(endpoint, exchange(endpoint, request), responseHandler);
+            } catch (final IOException e) {
+                if (retryPolicy == null || !retryPolicy.isRetried(endpoint, attempt, e)) {
+                    throw e;
+                }
+                final long backoffNanos = retryPolicy.getBackoffNanos(attempt);
+                metrics.onRetry(endpoint, attempt, backoffNanos, e);
+                TimeUnit.NANOSECONDS.sleep(backoffNanos);
+            }
+        }
+    }
+
+    private @NotNull HttpResponse<byte[]> exchange(final @NotNull Endpoint endpoint, final @NotNull HttpRequest request)
             throws IOException, InterruptedException {
-        final HttpRequest request = HttpRequest.newBuilder()
+        final CircuitBreaker.Permit permit = acquireCircuitBreaker(endpoint);
+        metrics.onRequestSent(endpoint, getRequestBytes(request));
+        final long start = System.nanoTime();
+        final HttpResponse<byte[]> response;
+        try {
+            response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (final IOException e) {
+            recordExchange(endpoint, permit, start, null, e);
+            throw e;
+        } catch (final InterruptedException | RuntimeException e) {
+            releaseCircuitBreaker(permit);
+            throw e;
+        }
+        recordExchange(endpoint, permit, start, response, null);
+        return response;
+    }
+
+    private <T> @NotNull CompletableFuture<T> sendAsync(
+            final @NotNull Endpoint endpoint,
+            final @NotNull HttpRequest request,
+            final @NotNull Function<@Nullable JSONObject, T> responseHandler) throws InterruptedException {
+        inFlightRequests.acquire();
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        sendAttemptAsync(endpoint, request, responseHandler, 1, result);
+        return result;
+    }
+
+    /**
+     * Must hold an in-flight permit, which is released before the result is completed, after the last attempt.
+     */
+    private <T> void sendAttemptAsync(
+            final @NotNull Endpoint endpoint,
+            final @NotNull HttpRequest request,
+            final @NotNull Function<@Nullable JSONObject, T> responseHandler,
+            final int attempt,
+            final @NotNull CompletableFuture<T> result) {
+        CompletableFuture<T> attemptFuture;
+        try {
+            final CircuitBreaker.Permit permit = acquireCircuitBreaker(endpoint);
+            metrics.onRequestSent(endpoint, getRequestBytes(request));
+            final long start = System.nanoTime();
+            final CompletableFuture<HttpResponse<byte[]>> responseFuture;
+            try {
+                responseFuture = client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+            } catch (final RuntimeException e) {
+                // For example if the HTTP client's executor rejects the request.
+                releaseCircuitBreaker(permit);
+                throw e;
+            }
+            attemptFuture = responseFuture
+                    .whenComplete((response, throwable) ->
+                            recordExchange(endpoint, permit, start, response, throwable))
+                    .thenApply(response -> {
+                        try {
+                            return decode(endpoint, response, responseHandler);
+                        } catch (final IOException e) {
+                            throw new CompletionException(e);
+                        }
+                    });
+        } catch (final IOException | RuntimeException e) {
+            attemptFuture = CompletableFuture.failedFuture(e);
+        }
+        attemptFuture.whenComplete((value, throwable) -> {
+            if (throwable == null) {
+                inFlightRequests.release();
+                result.complete(value);
+                return;
+            }
+            final Throwable cause = unwrap(throwable);
+            if (retryPolicy != null && retryPolicy.isRetried(endpoint, attempt, cause)) {
+                final long backoffNanos = retryPolicy.getBackoffNanos(attempt);
+                metrics.onRetry(endpoint, attempt, backoffNanos, (IOException) cause);
+                CompletableFuture.delayedExecutor(backoffNanos, TimeUnit.NANOSECONDS)
+                        .execute(() -> sendAttemptAsync(endpoint, request, responseHandler, attempt + 1, result));
+                return;
+            }
+            inFlightRequests.release();
+            result.completeExceptionally(cause);
+        });
+    }
+
+    /**
+     * Sends a hedged request if the first one did not complete within the hedging policy's delay, and completes
+     * with the first successful response. It only fails if all requests that were sent failed.
+     */
+    private @NotNull CompletableFuture<ImmutableList<@NotNull String>> sendMatchAsync(final @NotNull String topic)
+            throws InterruptedException {
+        final Endpoint endpoint = Endpoint.GET_MATCHING_SUBSCRIBERS;
+        final HttpRequest request = getMatchingSubscribersRequest(topic);
+        final long start = System.nanoTime();
+        final CompletableFuture<ImmutableList<String>> first =
+                sendAsync(endpoint, request, SubscriptionClient::toSubscribers);
+        final HedgingPolicy hedgingPolicy = this.hedgingPolicy;
+        if (hedgingPolicy == null) {
+            return first;
+        }
+        final CompletableFuture<ImmutableList<String>> result = new CompletableFuture<>();
+        final AtomicInteger pendingCount = new AtomicInteger(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Consumer<Throwable> onFailure = throwable -> {
+            failure.compareAndSet(null, throwable);
+            if (pendingCount.decrementAndGet() == 0) {
+                result.completeExceptionally(failure.get());
+            }
+        };
+        final BiConsumer<Boolean, ImmutableList<String>> onSuccess = (hedge, subscribers) -> {
+            if (result.complete(subscribers)) {
+                hedgingPolicy.recordNanos(System.nanoTime() - start);
+                if (hedge) {
+                    metrics.onHedgeWon(endpoint);
+                }
+            }
+        };
+        first.whenComplete((subscribers, throwable) -> {
+            if (throwable == null) {
+                onSuccess.accept(false, subscribers);
+            } else {
+                onFailure.accept(throwable);
+            }
+        });
+        CompletableFuture.delayedExecutor(hedgingPolicy.getDelayNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+            // A count of 0 means the first request failed, so the result is failed as well.
+            if (result.isDone() || pendingCount.getAndIncrement() == 0) {
+                return;
+            }
+            if (!inFlightRequests.tryAcquire()) {
+                // Not sending the hedge is no failure of its own, the result waits for the first request only.
+                if (pendingCount.decrementAndGet() == 0) {
+                    result.completeExceptionally(failure.get());
+                }
+                return;
+            }
+            final CompletableFuture<ImmutableList<String>> hedge = new CompletableFuture<>();
+            sendAttemptAsync(endpoint, request, SubscriptionClient::toSubscribers, 1, hedge);
+            // After the request was counted as sent, so a hedge is never counted without its request.
+            metrics.onHedgeSent(endpoint);
+            hedge.whenComplete((subscribers, throwable) -> {
+                if (throwable == null) {
+                    onSuccess.accept(true, subscribers);
+                } else {
+                    onFailure.accept(throwable);
+                }
+            });
+        });
+        return result;
+    }
+
+    /**
+     * Returns {@code null} if there is no circuit breaker.
+     */
+    private @Nullable CircuitBreaker.Permit acquireCircuitBreaker(final @NotNull Endpoint endpoint)
+            throws CircuitBreakerOpenException {
+        if (circuitBreaker == null) {
+            return null;
+        }
+        final CircuitBreaker.Permit permit = circuitBreaker.tryAcquire();
+        if (permit == null) {
+            metrics.onRequestRejected(endpoint);
+            throw new CircuitBreakerOpenException(endpoint);
+        }
+        return permit;
+    }
+
+    private void releaseCircuitBreaker(final @Nullable CircuitBreaker.Permit permit) {
+        if (circuitBreaker != null && permit != null) {
+            circuitBreaker.release(permit);
+        }
+    }
+
+    private void recordExchange(
+            final @NotNull Endpoint endpoint,
+            final @Nullable CircuitBreaker.Permit permit,
+            final long start,
+            final @Nullable HttpResponse<byte[]> response,
+            final @Nullable Throwable throwable) {
+        final long exchangeNanos = System.nanoTime() - start;
+        if (circuitBreaker != null && permit != null) {
+            // Any response shows the server keeps up, unless its status code says it does not.
+            if (response != null && !CircuitBreaker.isOverloadStatusCode(response.statusCode())) {
+                circuitBreaker.onSuccess(permit);
+            } else if (circuitBreaker.onFailure(permit)) {
+                metrics.onCircuitBreakerOpened();
+            }
+        }
+        if (response != null) {
+            metrics.onResponseReceived(endpoint, response.statusCode(), exchangeNanos, response.body().length);
+            return;
+        }
+        final Throwable cause = unwrap(throwable);
+        if (cause instanceof IOException) {
+            metrics.onRequestFailed(endpoint, exchangeNanos, (IOException) cause);
+        }
+    }
+
+    private static long getRequestBytes(final @NotNull HttpRequest request) {
+        return Math.max(0, request.bodyPublisher().map(HttpRequest.BodyPublisher::contentLength).orElse(0L));
+    }
+
+    private static @Nullable Throwable unwrap(final @Nullable Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ?
+                throwable.getCause() : throwable;
+    }
+
+    private static <T> T await(final @NotNull CompletableFuture<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private <T> T decode(
+            final @NotNull Endpoint endpoint,
+            final @NotNull HttpResponse<byte[]> response,
+            final @NotNull Function<@Nullable JSONObject, T> responseHandler) throws IOException {
+        final long start = System.nanoTime();
+        final T result = responseHandler.apply(handleJsonResponse(response));
+        metrics.onResponseDecoded(endpoint, System.nanoTime() - start);
+        return result;
+    }
+
+    private @NotNull HttpRequest addSubscriptionRequest(
+            final @NotNull String topicFilter, final @NotNull String clientId) {
+        final long encodeStart = System.nanoTime();
+        final JsonBodyEncoder body = JsonBodyEncoder.get()
+                .beginObject()
+                .field(TOPIC_FILTER_KEY, topicFilter)
+                .field(CLIENT_ID_KEY, clientId)
+                .endObject();
+        return postRequest(Endpoint.ADD_SUBSCRIPTION, addSubscriptionUri, body, encodeStart);
+    }
+
+    private @NotNull HttpRequest getMatchingSubscribersRequest(final @NotNull String topic) {
+        final long encodeStart = System.nanoTime();
+        final JsonBodyEncoder body = JsonBodyEncoder.get().beginObject().field(TOPIC_KEY, topic).endObject();
+        return postRequest(Endpoint.GET_MATCHING_SUBSCRIBERS, getMatchingSubscribersUri, body, encodeStart);
+    }
+
+    /**
+     * Copies the body out of the encoder's buffer, because the buffer is reused by the next body the thread encodes
+     * while the client may still read the body, for example on a retry or from its own threads.
+     */
+    private @NotNull HttpRequest postRequest(
+            final @NotNull Endpoint endpoint,
+            final @NotNull URI uri,
+            final @NotNull JsonBodyEncoder body,
+            final long encodeStart) {
+        final HttpRequest.BodyPublisher bodyPublisher = HttpRequest.BodyPublishers.ofByteArray(body.toByteArray());
+        metrics.onRequestEncoded(endpoint, System.nanoTime() - encodeStart);
+        return HttpRequest.newBuilder()
                 .uri(uri)
                 .timeout(requestTimeout)
-                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .POST(bodyPublisher)
                 .build();
-        final HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        handleJsonResponse(response, responseHandler);
     }
 
-    private void sendGetRequest(
-            final @NotNull URI uri,
-            final @NotNull Consumer<@NotNull JSONObject> responseHandler)
-            throws IOException, InterruptedException {
-        final HttpRequest request = HttpRequest.newBuilder()
+    private @NotNull HttpRequest getRequest(final @NotNull Endpoint endpoint, final @NotNull URI uri) {
+        metrics.onRequestEncoded(endpoint, 0);
+        return HttpRequest.newBuilder()
                 .uri(uri)
                 .timeout(requestTimeout)
                 .GET()
                 .build();
-        final HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        handleJsonResponse(response, responseHandler);
     }
 
-    private static void handleJsonResponse(
-            final @NotNull HttpResponse<String> response,
-            final @NotNull Consumer<@Nullable JSONObject> responseHandler)
+    private static @Nullable JSONObject handleJsonResponse(final @NotNull HttpResponse<byte[]> response)
             throws IOException {
+        final String body = new String(response.body(), StandardCharsets.UTF_8);
         if (response.statusCode() == HTTP_STATUS_CODE_OK) {
-            final String body = response.body();
-            responseHandler.accept(body.isEmpty() ? null : new JSONObject(body));
+            return body.isEmpty() ? null : new JSONObject(body);
         } else {
-            throw new IOException(response.statusCode() + ": " + response.body());
+            throw new HttpStatusException(response.statusCode(), body);
         }
     }
 }
@@ -0,0 +1,72 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * Receives one callback per phase of every request {@link SubscriptionClient} sends: encoding the request body,
+ * the exchange with the server (network I/O and server time, from sending the request until the response body is
+ * received) and decoding the response. Callbacks are invoked on the calling or on the HTTP client's threads, so
+ * implementations must be thread-safe and should not block.
+ */
+public interface SubscriptionClientMetrics {
+
+    enum Endpoint {
+        ADD_SUBSCRIPTION,
+        ADD_SUBSCRIPTIONS_BATCH,
+        GET_MATCHING_SUBSCRIBERS,
+        GET_SUBSCRIPTION_COUNT
+    }
+
+    static @NotNull SubscriptionClientMetrics noOp() {
+        return NoOpSubscriptionClientMetrics.INSTANCE;
+    }
+
+    /**
+     * Called once per request, before it is sent for the first time.
+     */
+    void onRequestEncoded(@NotNull Endpoint endpoint, long encodeNanos);
+
+    /**
+     * Called every time a request is sent, so retries and hedged requests are counted as well.
+     */
+    void onRequestSent(@NotNull Endpoint endpoint, long requestBytes);
+
+    /**
+     * Called for every response, including non-200 responses.
+     */
+    void onResponseReceived(@NotNull Endpoint endpoint, int statusCode, long exchangeNanos, long responseBytes);
+
+    void onResponseDecoded(@NotNull Endpoint endpoint, long decodeNanos);
+
+    /**
+     * Called instead of {@link #onResponseReceived} if no response was received, for example on a timeout. Also
+     * called after {@link #onResponseReceived} if the body of a streamed response is truncated or malformed.
+     */
+    void onRequestFailed(@NotNull Endpoint endpoint, long exchangeNanos, @NotNull IOException exception);
+
+    /**
+     * Called when a failed request is scheduled to be sent again by the {@link RetryPolicy}, with the attempt that
+     * failed, starting at 1.
+     */
+    void onRetry(@NotNull Endpoint endpoint, int attempt, long backoffNanos, @NotNull IOException exception);
+
+    /**
+     * Called when a hedged request is sent because the first one did not complete within the
+     * {@link HedgingPolicy}'s delay.
+     */
+    void onHedgeSent(@NotNull Endpoint endpoint);
+
+    /**
+     * Called when the response to a hedged request arrived before the response to the first one.
+     */
+    void onHedgeWon(@NotNull Endpoint endpoint);
+
+    /**
+     * Called instead of sending a request while the {@link CircuitBreaker} is open.
+     */
+    void onRequestRejected(@NotNull Endpoint endpoint);
+
+    void onCircuitBreakerOpened();
+}
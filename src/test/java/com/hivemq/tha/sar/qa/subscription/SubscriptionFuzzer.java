@@ -0,0 +1,663 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.UnaryOperator;
+
+/**
+ * Differential fuzzer for topic matching. It generates random cases of subscriptions and topics, with wildcards at
+ * arbitrary levels, empty levels, and control, non-ASCII and supplementary characters in levels and client IDs. It
+ * adds them to a {@link SubscriptionStore} and compares every match and the subscription count with a brute-force
+ * reference matcher built on {@link Topics#matches(String, String)}. The first mismatch is shrunk to a minimal
+ * repro: subscriptions are removed while the mismatch persists, then levels and client IDs are replaced with plain
+ * ASCII tokens.
+ * <p>
+ * Every case lives under its own first topic level. Cases therefore never match each other, and the store does not
+ * have to be empty, because the subscription count is checked against the distinct clients added since the run
+ * started. This also means the "$" rule of {@link Topics#matches(String, String)} is not exercised.
+ * <p>
+ * Cases are sent in batches. A {@link SubscriptionClient} gets a whole batch as one bulk add followed by pipelined
+ * async matches, so it is not limited by one round trip per request.
+ */
+public class SubscriptionFuzzer {
+
+    private static final double EMPTY_LEVEL_RATIO = 0.02;
+    private static final double SINGLE_LEVEL_WILDCARD_RATIO = 0.3;
+    private static final double DERIVED_TOPIC_RATIO = 0.7;
+    private static final int MAX_EXOTIC_LENGTH = 4;
+    private static final int MAX_MULTI_LEVEL_EXTENSION = 2;
+
+    public static class Builder {
+
+        private long seed = 42;
+        private int caseCount = 1000;
+        private int casesPerBatch = 50;
+        private int subscriptionsPerCase = 10;
+        private int topicsPerCase = 10;
+        private int clientsPerCase = 5;
+        private int maxDepth = 5;
+        private int fanOut = 3;
+        private double wildcardRatio = 0.5;
+        private double exoticRatio = 0.1;
+        private int maxShrinkAttempts = 1000;
+
+        private Builder() {
+        }
+
+        public @NotNull Builder setSeed(final long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public @NotNull Builder setCaseCount(final int caseCount) {
+            this.caseCount = caseCount;
+            return this;
+        }
+
+        public @NotNull Builder setCasesPerBatch(final int casesPerBatch) {
+            this.casesPerBatch = casesPerBatch;
+            return this;
+        }
+
+        public @NotNull Builder setSubscriptionsPerCase(final int subscriptionsPerCase) {
+            this.subscriptionsPerCase = subscriptionsPerCase;
+            return this;
+        }
+
+        public @NotNull Builder setTopicsPerCase(final int topicsPerCase) {
+            this.topicsPerCase = topicsPerCase;
+            return this;
+        }
+
+        public @NotNull Builder setClientsPerCase(final int clientsPerCase) {
+            this.clientsPerCase = clientsPerCase;
+            return this;
+        }
+
+        public @NotNull Builder setMaxDepth(final int maxDepth) {
+            this.maxDepth = maxDepth;
+            return this;
+        }
+
+        /**
+         * The number of distinct level names per case. A small fan-out makes topics and filters collide often.
+         */
+        public @NotNull Builder setFanOut(final int fanOut) {
+            this.fanOut = fanOut;
+            return this;
+        }
+
+        /**
+         * The probability that a topic filter contains wildcards.
+         */
+        public @NotNull Builder setWildcardRatio(final double wildcardRatio) {
+            this.wildcardRatio = wildcardRatio;
+            return this;
+        }
+
+        /**
+         * The probability that a level name or client ID consists of random control, non-ASCII or supplementary
+         * characters instead of a plain ASCII name.
+         */
+        public @NotNull Builder setExoticRatio(final double exoticRatio) {
+            this.exoticRatio = exoticRatio;
+            return this;
+        }
+
+        public @NotNull Builder setMaxShrinkAttempts(final int maxShrinkAttempts) {
+            this.maxShrinkAttempts = maxShrinkAttempts;
+            return this;
+        }
+
+        public @NotNull SubscriptionFuzzer build() {
+            return new SubscriptionFuzzer(this);
+        }
+    }
+
+    public static @NotNull Builder newBuilder() {
+        return new Builder();
+    }
+
+    private static class FuzzCase {
+
+        private final @NotNull ImmutableList<@NotNull Subscription> subscriptions;
+        private final @NotNull ImmutableList<@NotNull String> topics;
+
+        private FuzzCase(
+                final @NotNull ImmutableList<@NotNull Subscription> subscriptions,
+                final @NotNull ImmutableList<@NotNull String> topics) {
+            this.subscriptions = subscriptions;
+            this.topics = topics;
+        }
+    }
+
+    private final long seed;
+    private final int caseCount;
+    private final int casesPerBatch;
+    private final int subscriptionsPerCase;
+    private final int topicsPerCase;
+    private final int clientsPerCase;
+    private final int maxDepth;
+    private final int fanOut;
+    private final double wildcardRatio;
+    private final double exoticRatio;
+    private final int maxShrinkAttempts;
+
+    private SubscriptionFuzzer(final @NotNull Builder builder) {
+        assert builder.caseCount > 0 : "Case count must be > 0: " + builder.caseCount;
+        assert builder.casesPerBatch > 0 : "Cases per batch must be > 0: " + builder.casesPerBatch;
+        assert builder.subscriptionsPerCase > 0 : "Subscriptions per case must be > 0: " + builder.subscriptionsPerCase;
+        assert builder.clientsPerCase > 0 : "Clients per case must be > 0: " + builder.clientsPerCase;
+        assert builder.maxDepth > 0 : "Max depth must be > 0: " + builder.maxDepth;
+        assert builder.fanOut > 0 : "Fan-out must be > 0: " + builder.fanOut;
+        this.seed = builder.seed;
+        this.caseCount = builder.caseCount;
+        this.casesPerBatch = builder.casesPerBatch;
+        this.subscriptionsPerCase = builder.subscriptionsPerCase;
+        this.topicsPerCase = builder.topicsPerCase;
+        this.clientsPerCase = builder.clientsPerCase;
+        this.maxDepth = builder.maxDepth;
+        this.fanOut = builder.fanOut;
+        this.wildcardRatio = builder.wildcardRatio;
+        this.exoticRatio = builder.exoticRatio;
+        this.maxShrinkAttempts = builder.maxShrinkAttempts;
+    }
+
+    /**
+     * Stops at the first mismatch. The same seed generates the same cases.
+     */
+    public @NotNull FuzzResult run(final @NotNull SubscriptionStore store) throws IOException, InterruptedException {
+        return new Run(store).execute();
+    }
+
+    /**
+     * The brute-force reference: every subscription is checked against the topic. Each matching client is reported
+     * once, sorted, because the store contract does not define an order.
+     */
+    static @NotNull ImmutableList<@NotNull String> referenceMatch(
+            final @NotNull List<@NotNull Subscription> subscriptions, final @NotNull String topic) {
+        final Set<String> subscribers = new TreeSet<>();
+        for (final Subscription subscription : subscriptions) {
+            if (Topics.matches(subscription.getTopicFilter(), topic)) {
+                subscribers.add(subscription.getClientId());
+            }
+        }
+        return ImmutableList.copyOf(subscribers);
+    }
+
+    private class Run {
+
+        private final @NotNull SubscriptionStore store;
+        private final @NotNull Random random = new Random(seed);
+        private final @NotNull String runToken = Long.toString(System.nanoTime(), 36);
+        private final @NotNull Set<String> clients = new HashSet<>();
+        private int namespaceCount;
+        private int shrinkAttempts;
+
+        private Run(final @NotNull SubscriptionStore store) {
+            this.store = store;
+        }
+
+        @NotNull FuzzResult execute() throws IOException, InterruptedException {
+            final long start = System.nanoTime();
+            final long initialCount = store.getSubscriptionCount();
+            int executedCases = 0;
+            long subscriptionCount = 0;
+            long queryCount = 0;
+            while (executedCases < caseCount) {
+                final List<FuzzCase> cases = new ArrayList<>();
+                for (int i = 0; i < casesPerBatch && executedCases + i < caseCount; i++) {
+                    cases.add(nextCase(nextNamespace()));
+                }
+                executedCases += cases.size();
+                subscriptionCount += (long) cases.size() * subscriptionsPerCase;
+                queryCount += (long) cases.size() * topicsPerCase;
+                Mismatch mismatch = addAll(cases);
+                if (mismatch == null) {
+                    mismatch = matchAll(cases);
+                }
+                if (mismatch == null) {
+                    final long expectedCount = initialCount + clients.size();
+                    final long actualCount = store.getSubscriptionCount();
+                    if (actualCount != expectedCount) {
+                        final List<Subscription> subscriptions = new ArrayList<>();
+                        cases.forEach(fuzzCase -> subscriptions.addAll(fuzzCase.subscriptions));
+                        mismatch = shrink(new Mismatch(
+                                FuzzResult.Mismatch.Kind.COUNT,
+                                ImmutableList.copyOf(subscriptions),
+                                null,
+                                String.valueOf(expectedCount),
+                                String.valueOf(actualCount)));
+                    }
+                }
+                if (mismatch != null) {
+                    return new FuzzResult(
+                            executedCases,
+                            subscriptionCount,
+                            queryCount,
+                            Duration.ofNanos(System.nanoTime() - start),
+                            mismatch.toResult(shrinkAttempts));
+                }
+            }
+            return new FuzzResult(
+                    executedCases, subscriptionCount, queryCount, Duration.ofNanos(System.nanoTime() - start), null);
+        }
+
+        private @Nullable Mismatch addAll(final @NotNull List<@NotNull FuzzCase> cases)
+                throws IOException, InterruptedException {
+            final List<Subscription> subscriptions = new ArrayList<>();
+            cases.forEach(fuzzCase -> subscriptions.addAll(fuzzCase.subscriptions));
+            if (store instanceof SubscriptionClient) {
+                final BulkAddResult result =
+                        ((SubscriptionClient) store).addSubscriptions(subscriptions, subscriptions.size());
+                final Set<Subscription> failedSubscriptions = new HashSet<>(result.getFailedSubscriptions());
+                for (final Subscription subscription : subscriptions) {
+                    if (!failedSubscriptions.contains(subscription)) {
+                        clients.add(subscription.getClientId());
+                    }
+                }
+                if (!failedSubscriptions.isEmpty()) {
+                    final Subscription failedSubscription = result.getFailedSubscriptions().get(0);
+                    final Mismatch mismatch = reproduce(
+                            FuzzResult.Mismatch.Kind.ERROR, ImmutableList.of(failedSubscription), null);
+                    return mismatch != null ? mismatch : new Mismatch(
+                            FuzzResult.Mismatch.Kind.ERROR,
+                            ImmutableList.of(failedSubscription),
+                            null,
+                            "accepted",
+                            "rejected in a bulk add only");
+                }
+                return null;
+            }
+            for (final Subscription subscription : subscriptions) {
+                try {
+                    store.addSubscription(subscription.getTopicFilter(), subscription.getClientId());
+                } catch (final IOException e) {
+                    return new Mismatch(
+                            FuzzResult.Mismatch.Kind.ERROR,
+                            ImmutableList.of(subscription),
+                            null,
+                            "accepted",
+                            String.valueOf(e.getMessage()));
+                }
+                clients.add(subscription.getClientId());
+            }
+            return null;
+        }
+
+        private @Nullable Mismatch matchAll(final @NotNull List<@NotNull FuzzCase> cases)
+                throws IOException, InterruptedException {
+            final List<CompletableFuture<ImmutableList<String>>> futures = new ArrayList<>();
+            if (store instanceof SubscriptionClient) {
+                for (final FuzzCase fuzzCase : cases) {
+                    for (final String topic : fuzzCase.topics) {
+                        futures.add(((SubscriptionClient) store).getMatchingSubscribersAsync(topic));
+                    }
+                }
+            }
+            int index = 0;
+            for (final FuzzCase fuzzCase : cases) {
+                for (final String topic : fuzzCase.topics) {
+                    final ImmutableList<String> expected = referenceMatch(fuzzCase.subscriptions, topic);
+                    ImmutableList<String> actual;
+                    try {
+                        actual = futures.isEmpty() ? store.getMatchingSubscribers(topic) : futures.get(index).join();
+                    } catch (final IOException | CompletionException e) {
+                        final Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                        return shrink(new Mismatch(
+                                FuzzResult.Mismatch.Kind.ERROR,
+                                fuzzCase.subscriptions,
+                                topic,
+                                expected.toString(),
+                                String.valueOf(cause.getMessage())));
+                    }
+                    index++;
+                    actual = ImmutableList.sortedCopyOf(actual);
+                    if (!expected.equals(actual)) {
+                        return shrink(new Mismatch(
+                                FuzzResult.Mismatch.Kind.MATCH,
+                                fuzzCase.subscriptions,
+                                topic,
+                                expected.toString(),
+                                actual.toString()));
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Adds the subscriptions under a fresh namespace and checks them again, and returns the mismatch if one of
+         * the same kind occurs.
+         */
+        private @Nullable Mismatch reproduce(
+                final @NotNull FuzzResult.Mismatch.Kind kind,
+                final @NotNull List<@NotNull Subscription> subscriptions,
+                final @Nullable String topic) throws IOException, InterruptedException {
+            shrinkAttempts++;
+            final String namespace = nextNamespace();
+            final ImmutableList.Builder<Subscription> movedBuilder = ImmutableList.builder();
+            for (final Subscription subscription : subscriptions) {
+                movedBuilder.add(new Subscription(
+                        moveToNamespace(subscription.getTopicFilter(), namespace), subscription.getClientId()));
+            }
+            final ImmutableList<Subscription> moved = movedBuilder.build();
+            final String movedTopic = topic == null ? null : moveToNamespace(topic, namespace);
+            final long countBefore = kind == FuzzResult.Mismatch.Kind.COUNT ? store.getSubscriptionCount() : 0;
+            int newClients = 0;
+            for (final Subscription subscription : moved) {
+                try {
+                    store.addSubscription(subscription.getTopicFilter(), subscription.getClientId());
+                } catch (final IOException e) {
+                    return kind != FuzzResult.Mismatch.Kind.ERROR || topic != null ? null : new Mismatch(
+                            kind, moved, null, "accepted", String.valueOf(e.getMessage()));
+                }
+                if (clients.add(subscription.getClientId())) {
+                    newClients++;
+                }
+            }
+            if (kind == FuzzResult.Mismatch.Kind.COUNT) {
+                final long actualCount = store.getSubscriptionCount();
+                return actualCount - countBefore == newClients ? null : new Mismatch(
+                        kind,
+                        moved,
+                        null,
+                        "+" + newClients,
+                        "+" + (actualCount - countBefore));
+            }
+            if (movedTopic == null) {
+                return null;
+            }
+            final ImmutableList<String> expected = referenceMatch(moved, movedTopic);
+            final ImmutableList<String> actual;
+            try {
+                actual = ImmutableList.sortedCopyOf(store.getMatchingSubscribers(movedTopic));
+            } catch (final IOException e) {
+                return kind != FuzzResult.Mismatch.Kind.ERROR ? null : new Mismatch(
+                        kind, moved, movedTopic, expected.toString(), String.valueOf(e.getMessage()));
+            }
+            return kind != FuzzResult.Mismatch.Kind.MATCH || expected.equals(actual) ? null : new Mismatch(
+                    kind, moved, movedTopic, expected.toString(), actual.toString());
+        }
+
+        private @NotNull Mismatch shrink(final @NotNull Mismatch original) throws IOException, InterruptedException {
+            Mismatch best = reproduce(original.kind, original.subscriptions, original.topic);
+            if (best == null) {
+                // Not reproducible in isolation, for example because it depends on other cases of the batch.
+                return original;
+            }
+            best = removeSubscriptions(best);
+            best = simplifyTokens(best, true);
+            return simplifyTokens(best, false);
+        }
+
+        /**
+         * Delta debugging over the subscriptions: removes ever smaller chunks as long as the mismatch persists.
+         */
+        private @NotNull Mismatch removeSubscriptions(final @NotNull Mismatch mismatch)
+                throws IOException, InterruptedException {
+            Mismatch best = mismatch;
+            int granularity = 2;
+            while (!best.subscriptions.isEmpty() && shrinkAttempts < maxShrinkAttempts) {
+                final int size = best.subscriptions.size();
+                final int chunkSize = (size + granularity - 1) / granularity;
+                boolean reduced = false;
+                for (int start = 0; start < size && shrinkAttempts < maxShrinkAttempts; start += chunkSize) {
+                    final List<Subscription> candidate = new ArrayList<>(best.subscriptions.subList(0, start));
+                    candidate.addAll(best.subscriptions.subList(Math.min(size, start + chunkSize), size));
+                    final Mismatch reproduced = reproduce(best.kind, candidate, best.topic);
+                    if (reproduced != null) {
+                        best = reproduced;
+                        granularity = Math.max(granularity - 1, 2);
+                        reduced = true;
+                        break;
+                    }
+                }
+                if (!reduced) {
+                    if (chunkSize == 1) {
+                        break;
+                    }
+                    granularity = Math.min(granularity * 2, size);
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Replaces each distinct level (or each distinct client ID) everywhere at once, so the replacement keeps
+         * which filters match which topics.
+         */
+        private @NotNull Mismatch simplifyTokens(final @NotNull Mismatch mismatch, final boolean levels)
+                throws IOException, InterruptedException {
+            final Set<String> tokens = new LinkedHashSet<>();
+            for (final Subscription subscription : mismatch.subscriptions) {
+                if (levels) {
+                    addLevels(subscription.getTopicFilter(), tokens);
+                } else {
+                    tokens.add(subscription.getClientId());
+                }
+            }
+            if (levels && mismatch.topic != null) {
+                addLevels(mismatch.topic, tokens);
+            }
+            Mismatch best = mismatch;
+            int index = 0;
+            for (final String token : tokens) {
+                if (shrinkAttempts >= maxShrinkAttempts) {
+                    break;
+                }
+                final String replacement = (levels ? "l" : "c") + index++;
+                if (token.equals(replacement) || tokens.contains(replacement)) {
+                    continue;
+                }
+                final UnaryOperator<String> replaceLevel = value -> replaceLevel(value, token, replacement);
+                final List<Subscription> candidate = new ArrayList<>();
+                for (final Subscription subscription : best.subscriptions) {
+                    candidate.add(levels ?
+                            new Subscription(
+                                    replaceLevel.apply(subscription.getTopicFilter()), subscription.getClientId()) :
+                            new Subscription(
+                                    subscription.getTopicFilter(),
+                                    token.equals(subscription.getClientId()) ?
+                                            replacement : subscription.getClientId()));
+                }
+                final String candidateTopic =
+                        levels && best.topic != null ? replaceLevel.apply(best.topic) : best.topic;
+                final Mismatch reproduced = reproduce(best.kind, candidate, candidateTopic);
+                if (reproduced != null) {
+                    best = reproduced;
+                }
+            }
+            return best;
+        }
+
+        private @NotNull String nextNamespace() {
+            return "fuzz-" + runToken + "-" + namespaceCount++;
+        }
+
+        private @NotNull FuzzCase nextCase(final @NotNull String namespace) {
+            final String[] levelPool = new String[fanOut];
+            for (int i = 0; i < fanOut; i++) {
+                levelPool[i] = random.nextDouble() < exoticRatio ? nextExoticString(true) : "l" + i;
+            }
+            final String[] clientPool = new String[clientsPerCase];
+            for (int i = 0; i < clientsPerCase; i++) {
+                clientPool[i] = random.nextDouble() < exoticRatio ? nextExoticString(false) : "c" + i;
+            }
+            final List<List<String>> filters = new ArrayList<>();
+            final ImmutableList.Builder<Subscription> subscriptions = ImmutableList.builder();
+            for (int i = 0; i < subscriptionsPerCase; i++) {
+                final List<String> filter = nextFilterLevels(levelPool);
+                filters.add(filter);
+                subscriptions.add(new Subscription(
+                        join(namespace, filter), clientPool[random.nextInt(clientsPerCase)]));
+            }
+            final ImmutableList.Builder<String> topics = ImmutableList.builder();
+            for (int i = 0; i < topicsPerCase; i++) {
+                final List<String> topic = random.nextDouble() < DERIVED_TOPIC_RATIO ?
+                        topicMatching(filters.get(random.nextInt(filters.size())), levelPool) :
+                        nextTopicLevels(levelPool);
+                topics.add(join(namespace, topic));
+            }
+            return new FuzzCase(subscriptions.build(), topics.build());
+        }
+
+        private @NotNull List<@NotNull String> nextTopicLevels(final @NotNull String @NotNull [] levelPool) {
+            final int depth = 1 + random.nextInt(maxDepth);
+            final List<String> levels = new ArrayList<>(depth);
+            for (int i = 0; i < depth; i++) {
+                levels.add(nextLevel(levelPool));
+            }
+            return levels;
+        }
+
+        private @NotNull List<@NotNull String> nextFilterLevels(final @NotNull String @NotNull [] levelPool) {
+            final List<String> levels = nextTopicLevels(levelPool);
+            if (random.nextDouble() >= wildcardRatio) {
+                return levels;
+            }
+            for (int i = 0; i < levels.size(); i++) {
+                if (random.nextDouble() < SINGLE_LEVEL_WILDCARD_RATIO) {
+                    levels.set(i, Topics.SINGLE_LEVEL_WILDCARD);
+                }
+            }
+            if (random.nextBoolean()) {
+                final List<String> truncated = new ArrayList<>(levels.subList(0, random.nextInt(levels.size() + 1)));
+                truncated.add(Topics.MULTI_LEVEL_WILDCARD);
+                return truncated;
+            }
+            return levels;
+        }
+
+        private @NotNull List<@NotNull String> topicMatching(
+                final @NotNull List<@NotNull String> filter, final @NotNull String @NotNull [] levelPool) {
+            final List<String> levels = new ArrayList<>();
+            for (final String level : filter) {
+                if (Topics.SINGLE_LEVEL_WILDCARD.equals(level)) {
+                    levels.add(nextLevel(levelPool));
+                } else if (Topics.MULTI_LEVEL_WILDCARD.equals(level)) {
+                    final int extension = random.nextInt(MAX_MULTI_LEVEL_EXTENSION + 1);
+                    for (int i = 0; i < extension; i++) {
+                        levels.add(nextLevel(levelPool));
+                    }
+                } else {
+                    levels.add(level);
+                }
+            }
+            return levels;
+        }
+
+        private @NotNull String nextLevel(final @NotNull String @NotNull [] levelPool) {
+            return random.nextDouble() < EMPTY_LEVEL_RATIO ? "" : levelPool[random.nextInt(levelPool.length)];
+        }
+
+        /**
+         * Levels exclude the separator and wildcard characters. Neither levels nor client IDs contain U+0000, which
+         * MQTT forbids in strings.
+         */
+        private @NotNull String nextExoticString(final boolean level) {
+            final StringBuilder builder = new StringBuilder();
+            final int length = 1 + random.nextInt(MAX_EXOTIC_LENGTH);
+            while (builder.length() < length) {
+                final int codePoint;
+                switch (random.nextInt(5)) {
+                    case 0:
+                        codePoint = random.nextBoolean() ? 0x7F : 1 + random.nextInt(0x1F);
+                        break;
+                    case 1:
+                        codePoint = 0x20 + random.nextInt(0x5F);
+                        break;
+                    case 2:
+                        codePoint = 0xA0 + random.nextInt(0x60);
+                        break;
+                    case 3:
+                        codePoint = 0x100 + random.nextInt(0xFF00);
+                        break;
+                    default:
+                        codePoint = 0x10000 + random.nextInt(0x100000);
+                }
+                if (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+                    continue;
+                }
+                if (level && (codePoint == Topics.LEVEL_SEPARATOR || codePoint == '+' || codePoint == '#')) {
+                    continue;
+                }
+                builder.appendCodePoint(codePoint);
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * A mismatch while the run is in progress. It becomes a {@link FuzzResult.Mismatch} with the number of shrink
+     * attempts once shrinking is done.
+     */
+    private static class Mismatch {
+
+        private final @NotNull FuzzResult.Mismatch.Kind kind;
+        private final @NotNull ImmutableList<@NotNull Subscription> subscriptions;
+        private final @Nullable String topic;
+        private final @NotNull String expected;
+        private final @NotNull String actual;
+
+        private Mismatch(
+                final @NotNull FuzzResult.Mismatch.Kind kind,
+                final @NotNull ImmutableList<@NotNull Subscription> subscriptions,
+                final @Nullable String topic,
+                final @NotNull String expected,
+                final @NotNull String actual) {
+            this.kind = kind;
+            this.subscriptions = subscriptions;
+            this.topic = topic;
+            this.expected = expected;
+            this.actual = actual;
+        }
+
+        private @NotNull FuzzResult.Mismatch toResult(final int shrinkAttempts) {
+            return new FuzzResult.Mismatch(kind, subscriptions, topic, expected, actual, shrinkAttempts);
+        }
+    }
+
+    private static @NotNull String join(final @NotNull String namespace, final @NotNull List<@NotNull String> levels) {
+        return levels.isEmpty() ? namespace : namespace + Topics.LEVEL_SEPARATOR +
+                String.join(String.valueOf(Topics.LEVEL_SEPARATOR), levels);
+    }
+
+    private static @NotNull String moveToNamespace(final @NotNull String topic, final @NotNull String namespace) {
+        final int separator = topic.indexOf(Topics.LEVEL_SEPARATOR);
+        return separator < 0 ? namespace : namespace + topic.substring(separator);
+    }
+
+    private static void addLevels(final @NotNull String topic, final @NotNull Set<@NotNull String> levels) {
+        final String[] split = Topics.split(topic);
+        for (int i = 1; i < split.length; i++) {
+            if (!split[i].isEmpty() && !Topics.isWildcard(split[i])) {
+                levels.add(split[i]);
+            }
+        }
+    }
+
+    private static @NotNull String replaceLevel(
+            final @NotNull String topic, final @NotNull String level, final @NotNull String replacement) {
+        final String[] split = Topics.split(topic);
+        for (int i = 1; i < split.length; i++) {
+            if (split[i].equals(level)) {
+                split[i] = replacement;
+            }
+        }
+        return String.join(String.valueOf(Topics.LEVEL_SEPARATOR), split);
+    }
+}
@@ -1,21 +1,59 @@
 package com.hivemq.tha.sar.qa.subscription;
 
+import com.google.common.collect.ImmutableList;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.json.JSONObject;
+import org.junit.jupiter.api.extension.AfterAllCallback;
 import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
 import org.junit.jupiter.api.extension.BeforeEachCallback;
 import org.junit.jupiter.api.extension.Extension;
 import org.junit.jupiter.api.extension.ExtensionContext;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
-public class SubscriptionServerExtension implements Extension, BeforeEachCallback, AfterEachCallback {
+public class SubscriptionServerExtension
+        implements Extension, BeforeAllCallback, AfterAllCallback, BeforeEachCallback, AfterEachCallback {
 
+    private static final @NotNull ExtensionContext.Namespace NAMESPACE =
+            ExtensionContext.Namespace.create(SubscriptionServerExtension.class);
+    private static final @NotNull String RESOURCE_REPORT_KEY = "subscriptionServerResources";
     private static final @NotNull String SERVER_JAR_PATH =
             new File("src/test/resources/subscription-server.jar").getAbsolutePath();
+    private static final @NotNull String READY_MESSAGE = "Server is running on";
+    private static final @NotNull Duration DEFAULT_START_TIMEOUT = Duration.ofSeconds(30);
+    private static final int RETAINED_OUTPUT_LINES = 50;
+
+    public enum Lifecycle {
+        /**
+         * A fresh server process for every test method, so every test starts with an empty subscription store.
+         */
+        PER_METHOD,
+        /**
+         * One server process for all test methods of a class. The server has no way to delete subscriptions, and
+         * restarting it, its only reset, costs as much as {@link #PER_METHOD}. So the state is not reset between
+         * tests: each test must use topic filters and client IDs of its own, and compare counts with the count
+         * before it started.
+         */
+        PER_CLASS
+    }
 
     public static class Builder {
 
@@ -24,7 +62,9 @@ public class SubscriptionServerExtension implements Extension, BeforeEachCallbac
         private @Nullable Integer port;
         private @Nullable Integer threadCount;
         private @Nullable Duration requestTimeout;
-        private @Nullable Duration waitAfterStart;
+        private @NotNull Duration startTimeout = DEFAULT_START_TIMEOUT;
+        private @NotNull Lifecycle lifecycle = Lifecycle.PER_METHOD;
+        private @Nullable ServerInstrumentation instrumentation;
 
         private Builder() {
         }
@@ -54,19 +94,38 @@ public class SubscriptionServerExtension implements Extension, BeforeEachCallbac
             return this;
         }
 
-        public @NotNull Builder setWaitAfterStart(final @NotNull Duration waitAfterStart) {
-            this.waitAfterStart = waitAfterStart;
+        public @NotNull Builder setStartTimeout(final @NotNull Duration startTimeout) {
+            this.startTimeout = startTimeout;
+            return this;
+        }
+
+        public @NotNull Builder setLifecycle(final @NotNull Lifecycle lifecycle) {
+            this.lifecycle = lifecycle;
+            return this;
+        }
+
+        /**
+         * Starts the server with a JFR recording and GC logging, samples its resource usage and publishes a
+         * {@link ResourceReport} per test as a report entry.
+         */
+        public @NotNull Builder setInstrumentation(final @NotNull ServerInstrumentation instrumentation) {
+            this.instrumentation = instrumentation;
             return this;
         }
 
+        /**
+         * If no port is set, a free port is allocated when the extension is built.
+         */
         public @NotNull SubscriptionServerExtension build() {
             return new SubscriptionServerExtension(
                     Objects.requireNonNull(shellPath),
                     Objects.requireNonNull(javaPath),
-                    Objects.requireNonNull(port),
+                    port == null ? findFreePort() : port,
                     Objects.requireNonNull(threadCount),
                     Objects.requireNonNull(requestTimeout),
-                    Objects.requireNonNull(waitAfterStart));
+                    startTimeout,
+                    lifecycle,
+                    instrumentation);
         }
     }
 
@@ -74,12 +133,28 @@ public class SubscriptionServerExtension implements Extension, BeforeEachCallbac
         return new Builder();
     }
 
+    private static int findFreePort() {
+        try (final ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not allocate a free port", e);
+        }
+    }
+
+    private final @NotNull String shellPath;
+    private final @NotNull String javaPath;
     private final int port;
+    private final int threadCount;
     private final @NotNull Duration requestTimeout;
-    private final @NotNull Duration waitAfterStart;
-    private final @NotNull ProcessBuilder processBuilder;
+    private final @NotNull Duration startTimeout;
+    private final @NotNull Lifecycle lifecycle;
+    private final @Nullable ServerInstrumentation instrumentation;
+    private final @NotNull Deque<String> output = new ArrayDeque<>();
 
     private @Nullable Process process;
+    private @Nullable String recordingName;
+    private @Nullable ProcessResourceSampler sampler;
+    private @Nullable GcLogReader gcLogReader;
 
     private SubscriptionServerExtension(
             final @NotNull String shellPath,
@@ -87,19 +162,17 @@ public class SubscriptionServerExtension implements Extension, BeforeEachCallbac
             final int port,
             final int threadCount,
             final @NotNull Duration requestTimeout,
-            final @NotNull Duration waitAfterStart) {
+            final @NotNull Duration startTimeout,
+            final @NotNull Lifecycle lifecycle,
+            final @Nullable ServerInstrumentation instrumentation) {
+        this.shellPath = shellPath;
+        this.javaPath = javaPath;
         this.port = port;
+        this.threadCount = threadCount;
         this.requestTimeout = requestTimeout;
-        this.waitAfterStart = waitAfterStart;
-        final String command = String.join(
-                " ",
-                javaPath,
-                "-jar",
-                SERVER_JAR_PATH,
-                String.valueOf(port),
-                String.valueOf(threadCount),
-                String.valueOf(requestTimeout.getSeconds()));
-        this.processBuilder = new ProcessBuilder(shellPath, "-c", command);
+        this.startTimeout = startTimeout;
+        this.lifecycle = lifecycle;
+        this.instrumentation = instrumentation;
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             try {
                 terminateProcessIfRunning();
@@ -117,21 +190,187 @@ public class SubscriptionServerExtension implements Extension, BeforeEachCallbac
         return requestTimeout;
     }
 
+    /**
+     * Returns the resource usage of the current or last started server process, or {@code null} if the server is
+     * not instrumented or was never started.
+     */
+    public @Nullable ResourceReport getResourceReport() {
+        final ProcessResourceSampler currentSampler = sampler;
+        if (currentSampler == null) {
+            return null;
+        }
+        if (process != null && process.isAlive()) {
+            currentSampler.sample();
+        }
+        final GcLogReader currentGcLogReader = gcLogReader;
+        return new ResourceReport(
+                threadCount,
+                requestTimeout,
+                currentSampler.getSamples(),
+                currentGcLogReader == null ? ImmutableList.of() : currentGcLogReader.read());
+    }
+
+    /**
+     * Returns the JFR recording of the current or last started server process, which is complete once it stopped.
+     */
+    public @Nullable Path getFlightRecordingFile() {
+        return instrumentation == null || recordingName == null ? null :
+                instrumentation.getFlightRecordingFile(recordingName);
+    }
+
+    public @Nullable Path getGcLogFile() {
+        return instrumentation == null || recordingName == null ? null : instrumentation.getGcLogFile(recordingName);
+    }
+
+    @Override
+    public void beforeAll(final @NotNull ExtensionContext extensionContext) throws IOException, InterruptedException {
+        if (lifecycle == Lifecycle.PER_CLASS) {
+            start();
+        }
+    }
+
+    @Override
+    public void afterAll(final @NotNull ExtensionContext extensionContext) throws InterruptedException {
+        if (lifecycle == Lifecycle.PER_CLASS) {
+            stop();
+        }
+    }
+
     @Override
     public void beforeEach(final @NotNull ExtensionContext extensionContext) throws IOException, InterruptedException {
-        process = processBuilder.start();
-        Thread.sleep(waitAfterStart.toMillis());
+        if (lifecycle == Lifecycle.PER_METHOD) {
+            start();
+        }
+        extensionContext.getStore(NAMESPACE).put(RESOURCE_REPORT_KEY, System.nanoTime());
     }
 
     @Override
     public void afterEach(final @NotNull ExtensionContext extensionContext) throws InterruptedException {
+        publishResourceReport(
+                extensionContext, extensionContext.getStore(NAMESPACE).get(RESOURCE_REPORT_KEY, Long.class));
+        if (lifecycle == Lifecycle.PER_METHOD) {
+            stop();
+        }
+    }
+
+    /**
+     * Returns as soon as the server reports that it accepts requests, instead of sleeping for a fixed time.
+     */
+    public void start() throws IOException, InterruptedException {
+        synchronized (output) {
+            output.clear();
+        }
+        final List<String> command = new ArrayList<>();
+        command.add(javaPath);
+        if (instrumentation != null) {
+            Files.createDirectories(instrumentation.getOutputDirectory());
+            recordingName = "subscription-server-" + port + "-" + System.currentTimeMillis();
+            command.addAll(instrumentation.getJvmOptions(recordingName));
+        }
+        command.add("-jar");
+        command.add(SERVER_JAR_PATH);
+        command.add(String.valueOf(port));
+        command.add(String.valueOf(threadCount));
+        command.add(String.valueOf(requestTimeout.getSeconds()));
+        final long processStartNanoTime = System.nanoTime();
+        final Process startedProcess = new ProcessBuilder(shellPath, "-c", toShellCommand(command))
+                .redirectErrorStream(true)
+                .start();
+        process = startedProcess;
+        if (instrumentation != null) {
+            sampler = new ProcessResourceSampler(startedProcess.toHandle(), instrumentation.getSampleInterval());
+            final Path gcLogFile = getGcLogFile();
+            gcLogReader = gcLogFile == null ? null : new GcLogReader(gcLogFile, processStartNanoTime);
+        }
+        final CountDownLatch ready = new CountDownLatch(1);
+        final Thread outputReader = new Thread(() -> readOutput(startedProcess, ready), "subscription-server-" + port);
+        outputReader.setDaemon(true);
+        outputReader.start();
+        final long deadline = System.nanoTime() + startTimeout.toNanos();
+        while (!ready.await(10, TimeUnit.MILLISECONDS)) {
+            if (!startedProcess.isAlive() || System.nanoTime() - deadline > 0) {
+                terminateProcessIfRunning();
+                throw new IOException("Subscription server on port " + port + " did not become ready within " +
+                        startTimeout + ", last output:\n" + getOutput());
+            }
+        }
+    }
+
+    public void stop() throws InterruptedException {
         terminateProcessIfRunning();
     }
 
+    public void restart() throws IOException, InterruptedException {
+        stop();
+        start();
+    }
+
+    public @NotNull String getOutput() {
+        synchronized (output) {
+            return String.join("\n", output);
+        }
+    }
+
+    /**
+     * Publishes the resource usage since the given {@link System#nanoTime()} as a report entry of the test, if the
+     * server is instrumented.
+     */
+    void publishResourceReport(final @NotNull ExtensionContext extensionContext, final @Nullable Long sinceNanoTime) {
+        final ResourceReport report = getResourceReport();
+        if (report == null) {
+            return;
+        }
+        final JSONObject json = (sinceNanoTime == null ? report : report.since(sinceNanoTime)).toJson();
+        json.put("port", port);
+        final Path flightRecordingFile = getFlightRecordingFile();
+        if (flightRecordingFile != null) {
+            json.put("flightRecording", flightRecordingFile.toString());
+        }
+        final Path gcLogFile = getGcLogFile();
+        if (gcLogFile != null) {
+            json.put("gcLog", gcLogFile.toString());
+        }
+        extensionContext.publishReportEntry(RESOURCE_REPORT_KEY, json.toString());
+    }
+
+    private static @NotNull String toShellCommand(final @NotNull List<@NotNull String> arguments) {
+        final List<String> quotedArguments = new ArrayList<>(arguments.size());
+        for (final String argument : arguments) {
+            quotedArguments.add("'" + argument.replace("'", "'\\''") + "'");
+        }
+        return String.join(" ", quotedArguments);
+    }
+
+    /**
+     * Keeps draining the output after the server is ready, because a full pipe would block the server's logging.
+     */
+    private void readOutput(final @NotNull Process process, final @NotNull CountDownLatch ready) {
+        try (final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                synchronized (output) {
+                    if (output.size() == RETAINED_OUTPUT_LINES) {
+                        output.removeFirst();
+                    }
+                    output.addLast(line);
+                }
+                if (line.contains(READY_MESSAGE)) {
+                    ready.countDown();
+                }
+            }
+        } catch (final IOException e) {
+            // The stream is closed when the process is terminated.
+        }
+    }
+
     private void terminateProcessIfRunning() throws InterruptedException {
         if (process != null) {
             process.destroy();
             process.waitFor();
         }
+        if (sampler != null) {
+            sampler.stop();
+        }
     }
 }
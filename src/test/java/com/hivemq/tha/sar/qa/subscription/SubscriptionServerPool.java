@@ -0,0 +1,286 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.Extension;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolutionException;
+import org.junit.jupiter.api.extension.ParameterResolver;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.platform.commons.support.AnnotationSupport;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Gives every test its own freshly started server on a free port, injected as a {@link SubscriptionServerExtension}
+ * or a {@link SubscriptionClient} parameter of the test method or of a {@code @BeforeEach} method. A number of
+ * servers are started ahead of time, so a test only waits for a server if tests consume them faster than they
+ * start. By default, as many servers are started ahead as tests of the class run in parallel. A server is stopped as
+ * soon as the test that used it is finished, after its {@link ResourceReport} is published if the servers are
+ * instrumented. Once all tests of the class are finished, no more servers are started, and the servers that were
+ * started ahead are stopped.
+ */
+public class SubscriptionServerPool implements Extension, ParameterResolver, AfterEachCallback, AfterAllCallback {
+
+    private static final @NotNull ExtensionContext.Namespace NAMESPACE =
+            ExtensionContext.Namespace.create(SubscriptionServerPool.class);
+    private static final int START_ATTEMPTS = 3;
+    private static final @NotNull String PARALLEL_ENABLED = "junit.jupiter.execution.parallel.enabled";
+    private static final @NotNull String PARALLEL_MODE = "junit.jupiter.execution.parallel.mode.default";
+    private static final @NotNull String PARALLEL_STRATEGY = "junit.jupiter.execution.parallel.config.strategy";
+    private static final @NotNull String PARALLEL_FACTOR = "junit.jupiter.execution.parallel.config.dynamic.factor";
+    private static final @NotNull String PARALLELISM = "junit.jupiter.execution.parallel.config.fixed.parallelism";
+
+    public static class Builder {
+
+        private @Nullable String shellPath;
+        private @Nullable String javaPath;
+        private @Nullable Integer threadCount;
+        private @Nullable Duration requestTimeout;
+        private @NotNull Duration startTimeout = Duration.ofSeconds(30);
+        private @Nullable Integer size;
+        private @Nullable ServerInstrumentation instrumentation;
+
+        private Builder() {
+        }
+
+        public @NotNull Builder setShellPath(final @NotNull String shellPath) {
+            this.shellPath = shellPath;
+            return this;
+        }
+
+        public @NotNull Builder setJavaPath(final @NotNull String javaPath) {
+            this.javaPath = javaPath;
+            return this;
+        }
+
+        public @NotNull Builder setThreadCount(final int threadCount) {
+            this.threadCount = threadCount;
+            return this;
+        }
+
+        public @NotNull Builder setRequestTimeout(final @NotNull Duration requestTimeout) {
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
+        public @NotNull Builder setStartTimeout(final @NotNull Duration startTimeout) {
+            this.startTimeout = startTimeout;
+            return this;
+        }
+
+        /**
+         * The maximum number of servers started ahead. Fewer are started if fewer tests of the class run in parallel.
+         */
+        public @NotNull Builder setSize(final int size) {
+            this.size = size;
+            return this;
+        }
+
+        public @NotNull Builder setInstrumentation(final @NotNull ServerInstrumentation instrumentation) {
+            this.instrumentation = instrumentation;
+            return this;
+        }
+
+        public @NotNull SubscriptionServerPool build() {
+            final SubscriptionServerExtension.Builder serverBuilder = SubscriptionServerExtension.newBuilder()
+                    .setShellPath(Objects.requireNonNull(shellPath))
+                    .setJavaPath(Objects.requireNonNull(javaPath))
+                    .setThreadCount(Objects.requireNonNull(threadCount))
+                    .setRequestTimeout(Objects.requireNonNull(requestTimeout))
+                    .setStartTimeout(startTimeout);
+            if (instrumentation != null) {
+                serverBuilder.setInstrumentation(instrumentation);
+            }
+            return new SubscriptionServerPool(serverBuilder, size);
+        }
+    }
+
+    public static @NotNull Builder newBuilder() {
+        return new Builder();
+    }
+
+    private static class Lease implements ExtensionContext.Store.CloseableResource {
+
+        private final @NotNull SubscriptionServerExtension server;
+        private final long startNanoTime = System.nanoTime();
+
+        private Lease(final @NotNull SubscriptionServerExtension server) {
+            this.server = server;
+        }
+
+        @Override
+        public void close() throws InterruptedException {
+            server.stop();
+        }
+    }
+
+    private final @NotNull SubscriptionServerExtension.Builder serverBuilder;
+    private final @Nullable Integer size;
+    private final @NotNull BlockingQueue<CompletableFuture<SubscriptionServerExtension>> servers =
+            new LinkedBlockingQueue<>();
+    private @Nullable ExecutorService starter;
+
+    private SubscriptionServerPool(
+            final @NotNull SubscriptionServerExtension.Builder serverBuilder, final @Nullable Integer size) {
+        assert size == null || size > 0 : "Pool size must be > 0: " + size;
+        this.serverBuilder = serverBuilder;
+        this.size = size;
+    }
+
+    @Override
+    public boolean supportsParameter(
+            final @NotNull ParameterContext parameterContext, final @NotNull ExtensionContext extensionContext) {
+        final Class<?> type = parameterContext.getParameter().getType();
+        return type == SubscriptionServerExtension.class || type == SubscriptionClient.class;
+    }
+
+    @Override
+    public @NotNull Object resolveParameter(
+            final @NotNull ParameterContext parameterContext, final @NotNull ExtensionContext extensionContext) {
+        final SubscriptionServerExtension server = extensionContext.getStore(NAMESPACE)
+                .getOrComputeIfAbsent(Lease.class, key -> new Lease(acquire(extensionContext)), Lease.class).server;
+        if (parameterContext.getParameter().getType() == SubscriptionServerExtension.class) {
+            return server;
+        }
+        try {
+            return new SubscriptionClient(server.getPort(), server.getRequestTimeout());
+        } catch (final URISyntaxException e) {
+            throw new ParameterResolutionException("Could not create a client for port " + server.getPort(), e);
+        }
+    }
+
+    @Override
+    public void afterEach(final @NotNull ExtensionContext extensionContext) {
+        final Lease lease = extensionContext.getStore(NAMESPACE).get(Lease.class, Lease.class);
+        if (lease != null) {
+            lease.server.publishResourceReport(extensionContext, lease.startNanoTime);
+        }
+    }
+
+    @Override
+    public void afterAll(final @NotNull ExtensionContext extensionContext) throws InterruptedException {
+        final List<CompletableFuture<SubscriptionServerExtension>> idle = new ArrayList<>();
+        synchronized (this) {
+            servers.drainTo(idle);
+            if (starter != null) {
+                // Lets the starts in progress finish, so their servers can be stopped below.
+                starter.shutdown();
+                starter = null;
+            }
+        }
+        for (final CompletableFuture<SubscriptionServerExtension> server : idle) {
+            try {
+                server.join().stop();
+            } catch (final CompletionException e) {
+                // The server never started, so there is nothing to stop.
+            }
+        }
+    }
+
+    private @NotNull SubscriptionServerExtension acquire(final @NotNull ExtensionContext extensionContext) {
+        synchronized (this) {
+            if (starter == null) {
+                final int parallelism = getParallelism(extensionContext);
+                final int size = this.size == null ? parallelism : Math.min(this.size, parallelism);
+                final ExecutorService starter = Executors.newFixedThreadPool(size, runnable -> {
+                    final Thread thread = new Thread(runnable, "subscription-server-pool");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                for (int i = 0; i < size; i++) {
+                    servers.add(startServer(starter));
+                }
+                this.starter = starter;
+            }
+        }
+        final CompletableFuture<SubscriptionServerExtension> server;
+        try {
+            server = servers.take();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ParameterResolutionException("Interrupted while waiting for a subscription server", e);
+        }
+        synchronized (this) {
+            // Null once all tests of the class are finished.
+            if (starter != null) {
+                servers.add(startServer(starter));
+            }
+        }
+        try {
+            return server.join();
+        } catch (final CompletionException e) {
+            throw new ParameterResolutionException("Could not start a subscription server", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the number of tests of the class that run in parallel, as configured for the JUnit platform. The
+     * execution mode of the test the server is acquired for is taken as the mode of all tests of the class.
+     */
+    private static int getParallelism(final @NotNull ExtensionContext extensionContext) {
+        final ExecutionMode executionMode = AnnotationSupport
+                .findAnnotation(extensionContext.getTestMethod(), Execution.class)
+                .or(() -> AnnotationSupport.findAnnotation(extensionContext.getRequiredTestClass(), Execution.class))
+                .map(Execution::value)
+                .orElseGet(() -> extensionContext.getConfigurationParameter(PARALLEL_MODE)
+                        .map(mode -> ExecutionMode.valueOf(mode.toUpperCase(Locale.ROOT)))
+                        .orElse(ExecutionMode.SAME_THREAD));
+        if (!extensionContext.getConfigurationParameter(PARALLEL_ENABLED).map(Boolean::parseBoolean).orElse(false) ||
+                executionMode == ExecutionMode.SAME_THREAD) {
+            return 1;
+        }
+        final int processors = Runtime.getRuntime().availableProcessors();
+        switch (extensionContext.getConfigurationParameter(PARALLEL_STRATEGY).orElse("dynamic")) {
+            case "fixed":
+                return extensionContext.getConfigurationParameter(PARALLELISM).map(Integer::parseInt).orElse(1);
+            case "dynamic":
+                final BigDecimal factor = extensionContext.getConfigurationParameter(PARALLEL_FACTOR)
+                        .map(BigDecimal::new)
+                        .orElse(BigDecimal.ONE);
+                return Math.max(1, factor.multiply(BigDecimal.valueOf(processors)).intValue());
+            default:
+                return processors;
+        }
+    }
+
+    /**
+     * Each attempt uses a new free port, because another process may take a free port before the server binds it.
+     */
+    private @NotNull CompletableFuture<SubscriptionServerExtension> startServer(
+            final @NotNull ExecutorService starter) {
+        return CompletableFuture.supplyAsync(() -> {
+            IOException lastException = null;
+            for (int attempt = 0; attempt < START_ATTEMPTS; attempt++) {
+                final SubscriptionServerExtension server = serverBuilder.build();
+                try {
+                    server.start();
+                    return server;
+                } catch (final IOException e) {
+                    lastException = e;
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CompletionException(e);
+                }
+            }
+            throw new CompletionException(lastException);
+        }, starter);
+    }
+}
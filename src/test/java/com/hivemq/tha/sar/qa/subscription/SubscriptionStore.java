@@ -0,0 +1,21 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * The contract of the subscription server's HTTP endpoints: the subscription count is the number of distinct
+ * subscribed clients, and each matching client is reported once per match.
+ */
+public interface SubscriptionStore {
+
+    void addSubscription(@NotNull String topicFilter, @NotNull String clientId)
+            throws IOException, InterruptedException;
+
+    @NotNull ImmutableList<@NotNull String> getMatchingSubscribers(@NotNull String topic)
+            throws IOException, InterruptedException;
+
+    long getSubscriptionCount() throws IOException, InterruptedException;
+}
@@ -0,0 +1,105 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class TopicTreeGenerator {
+
+    private static final @NotNull String ROOT_LEVEL = "building";
+    private static final @NotNull String @NotNull [] LEVEL_NAMES = {"floor", "room", "device", "sensor", "channel"};
+
+    private final @NotNull Random random;
+    private final int depth;
+    private final int fanOut;
+    private final double wildcardRatio;
+    private final double @Nullable [] cumulativeLevelWeights;
+
+    public TopicTreeGenerator(final long seed, final int depth, final int fanOut, final double wildcardRatio) {
+        this(seed, depth, fanOut, wildcardRatio, 0);
+    }
+
+    /**
+     * With a {@code skew} greater than 0, the level values of each level follow a Zipf distribution with that
+     * exponent instead of a uniform one, so a few subtrees receive most of the topics and subscriptions.
+     */
+    public TopicTreeGenerator(
+            final long seed, final int depth, final int fanOut, final double wildcardRatio, final double skew) {
+        assert depth > 0 : "Depth must be > 0: " + depth;
+        assert fanOut > 0 : "Fan-out must be > 0: " + fanOut;
+        assert wildcardRatio >= 0 && wildcardRatio <= 1 : "Wildcard ratio must be in [0, 1]: " + wildcardRatio;
+        assert skew >= 0 : "Skew must be >= 0: " + skew;
+        this.random = new Random(seed);
+        this.depth = depth;
+        this.fanOut = fanOut;
+        this.wildcardRatio = wildcardRatio;
+        this.cumulativeLevelWeights = skew == 0 ? null : cumulativeZipfWeights(fanOut, skew);
+    }
+
+    public @NotNull String nextTopic() {
+        final StringBuilder topic = new StringBuilder(ROOT_LEVEL);
+        for (int level = 1; level < depth; level++) {
+            topic.append(Topics.LEVEL_SEPARATOR).append(levelName(level)).append(nextLevelValue());
+        }
+        return topic.toString();
+    }
+
+    /**
+     * With probability {@code wildcardRatio}, one level of a generated topic is replaced by "+" or the topic is cut
+     * off with "#" at a random level, each with equal probability.
+     */
+    public @NotNull String nextTopicFilter() {
+        final String topic = nextTopic();
+        if (depth == 1 || random.nextDouble() >= wildcardRatio) {
+            return topic;
+        }
+        final String[] levels = Topics.split(topic);
+        final int wildcardLevel = 1 + random.nextInt(depth - 1);
+        if (random.nextBoolean()) {
+            levels[wildcardLevel] = Topics.SINGLE_LEVEL_WILDCARD;
+            return String.join(String.valueOf(Topics.LEVEL_SEPARATOR), levels);
+        }
+        final String[] prefix = new String[wildcardLevel + 1];
+        System.arraycopy(levels, 0, prefix, 0, wildcardLevel);
+        prefix[wildcardLevel] = Topics.MULTI_LEVEL_WILDCARD;
+        return String.join(String.valueOf(Topics.LEVEL_SEPARATOR), prefix);
+    }
+
+    public @NotNull List<@NotNull Subscription> nextSubscriptions(final int count, final int clientCount) {
+        assert clientCount > 0 : "Client count must be > 0: " + clientCount;
+        final List<Subscription> subscriptions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            subscriptions.add(new Subscription(nextTopicFilter(), "client" + random.nextInt(clientCount)));
+        }
+        return subscriptions;
+    }
+
+    private int nextLevelValue() {
+        if (cumulativeLevelWeights == null) {
+            return random.nextInt(fanOut);
+        }
+        final int index = Arrays.binarySearch(cumulativeLevelWeights, random.nextDouble());
+        return Math.min(index < 0 ? -index - 1 : index, fanOut - 1);
+    }
+
+    private static double @NotNull [] cumulativeZipfWeights(final int fanOut, final double skew) {
+        final double[] weights = new double[fanOut];
+        double sum = 0;
+        for (int rank = 0; rank < fanOut; rank++) {
+            sum += 1 / Math.pow(rank + 1, skew);
+            weights[rank] = sum;
+        }
+        for (int rank = 0; rank < fanOut; rank++) {
+            weights[rank] /= sum;
+        }
+        return weights;
+    }
+
+    private static @NotNull String levelName(final int level) {
+        return LEVEL_NAMES[(level - 1) % LEVEL_NAMES.length];
+    }
+}
@@ -0,0 +1,56 @@
+package com.hivemq.tha.sar.qa.subscription;
+
+import org.jetbrains.annotations.NotNull;
+
+public final class Topics {
+
+    public static final char LEVEL_SEPARATOR = '/';
+    public static final @NotNull String SINGLE_LEVEL_WILDCARD = "+";
+    public static final @NotNull String MULTI_LEVEL_WILDCARD = "#";
+    private static final char SYSTEM_TOPIC_PREFIX = '$';
+
+    private Topics() {
+    }
+
+    public static @NotNull String @NotNull [] split(final @NotNull String topic) {
+        return topic.split(String.valueOf(LEVEL_SEPARATOR), -1);
+    }
+
+    public static boolean isWildcard(final @NotNull String level) {
+        return SINGLE_LEVEL_WILDCARD.equals(level) || MULTI_LEVEL_WILDCARD.equals(level);
+    }
+
+    public static boolean containsWildcard(final @NotNull String topicFilter) {
+        return topicFilter.indexOf('+') >= 0 || topicFilter.indexOf('#') >= 0;
+    }
+
+    /**
+     * Matches according to MQTT 3.1.1 section 4.7: "+" matches exactly one level, a trailing "#" matches the parent
+     * level and any number of child levels, and filters starting with a wildcard do not match topics starting with
+     * "$".
+     */
+    public static boolean matches(final @NotNull String topicFilter, final @NotNull String topic) {
+        return matches(split(topicFilter), split(topic));
+    }
+
+    public static boolean matches(
+            final @NotNull String @NotNull [] filterLevels, final @NotNull String @NotNull [] topicLevels) {
+        if (isWildcard(filterLevels[0]) && !topicLevels[0].isEmpty() &&
+                topicLevels[0].charAt(0) == SYSTEM_TOPIC_PREFIX) {
+            return false;
+        }
+        for (int i = 0; i < filterLevels.length; i++) {
+            final String filterLevel = filterLevels[i];
+            if (MULTI_LEVEL_WILDCARD.equals(filterLevel)) {
+                return i == filterLevels.length - 1;
+            }
+            if (i >= topicLevels.length) {
+                return false;
+            }
+            if (!SINGLE_LEVEL_WILDCARD.equals(filterLevel) && !filterLevel.equals(topicLevels[i])) {
+                return false;
+            }
+        }
+        return filterLevels.length == topicLevels.length;
+    }
+}